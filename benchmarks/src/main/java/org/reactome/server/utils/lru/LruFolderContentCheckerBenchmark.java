@@ -0,0 +1,74 @@
+package org.reactome.server.utils.lru;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checking cycle of the {@link LruFolderContentChecker} over flat synthetic folders.
+ * <p>
+ * "scan" measures a cycle where the folder is under the maximum size, so nothing is deleted.
+ * "scanAndEvict" measures a cycle that has to delete the 10% least recently used files; the
+ * deleted files are created again before every invocation.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LruFolderContentCheckerBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Folder {
+
+        @Param({"10000", "100000", "1000000"})
+        public int files;
+
+        SyntheticFolder folder;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            this.folder = new SyntheticFolder(this.files);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            this.folder.delete();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Scan {
+        LruFolderContentChecker checker;
+
+        @Setup(Level.Trial)
+        public void setUp(Folder folder) {
+            this.checker = new LruFolderContentChecker(folder.folder.getPath(), Long.MAX_VALUE, 0L, 0L);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Evict {
+        LruFolderContentChecker checker;
+
+        @Setup(Level.Invocation)
+        public void setUp(Folder folder) throws IOException {
+            folder.folder.fill();
+            // Every file has one byte, so the maximum size keeps 90% of them
+            this.checker = new LruFolderContentChecker(folder.folder.getPath(), folder.files * 9L / 10L, 0L, 0L);
+        }
+    }
+
+    @Benchmark
+    public int scan(Scan scan) throws IOException {
+        scan.checker.check();
+        return scan.checker.getTrackedFiles();
+    }
+
+    @Benchmark
+    public int scanAndEvict(Evict evict) throws IOException {
+        evict.checker.check();
+        return evict.checker.getTrackedFiles();
+    }
+}
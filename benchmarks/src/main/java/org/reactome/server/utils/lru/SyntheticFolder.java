@@ -0,0 +1,52 @@
+package org.reactome.server.utils.lru;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * Flat folder with a given number of one byte files, each of them accessed one
+ * millisecond after the previous one so the LRU order is deterministic.
+ * <p>
+ * It is created under the folder given by the "lru.benchmark.dir" system property
+ * (java.io.tmpdir by default), so it can be placed in the volume to be measured.
+ */
+class SyntheticFolder {
+
+    private static final long BASE_ACCESS_TIME = 1_000_000_000_000L;
+    private static final byte[] CONTENT = {'x'};
+
+    private final Path folder;
+    private final int files;
+
+    SyntheticFolder(int files) throws IOException {
+        Path parent = Paths.get(System.getProperty("lru.benchmark.dir", System.getProperty("java.io.tmpdir")));
+        this.folder = Files.createTempDirectory(parent, "lru-benchmark");
+        this.files = files;
+        fill();
+    }
+
+    String getPath() {
+        return this.folder.toString();
+    }
+
+    /**
+     * Creates the files that are missing, e.g. after an eviction
+     */
+    void fill() throws IOException {
+        for (int i = 0; i < this.files; i++) {
+            Path file = this.folder.resolve("f" + i);
+            if (Files.exists(file)) continue;
+            Files.write(file, CONTENT);
+            Files.setAttribute(file, "lastAccessTime", FileTime.fromMillis(BASE_ACCESS_TIME + i));
+        }
+    }
+
+    void delete() throws IOException {
+        FileUtils.deleteDirectory(this.folder.toFile());
+    }
+}
@@ -0,0 +1,59 @@
+package org.reactome.server.utils.proxy;
+
+import org.apache.http.client.methods.HttpGet;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockServletConfig;
+
+import javax.servlet.ServletException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building the upstream request: destination URL and header copying.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProxyRequestBenchmark {
+
+    @Param({"5", "20", "50"})
+    public int headers;
+
+    private ProxyServlet servlet;
+    private MockHttpServletRequest request;
+
+    @Setup
+    public void setUp() throws ServletException {
+        MockServletConfig config = new MockServletConfig("proxy");
+        config.addInitParameter("proxyProtocol", "http");
+        config.addInitParameter("proxyHost", "upstream.example.org");
+        config.addInitParameter("proxyPort", "8080");
+        config.addInitParameter("proxyPath", "/content");
+        this.servlet = new ProxyServlet();
+        this.servlet.init(config);
+
+        this.request = new MockHttpServletRequest("GET", "/proxy/detail/R-HSA-199420");
+        this.request.setServletPath("/proxy");
+        this.request.setPathInfo("/detail/R-HSA-199420");
+        this.request.setQueryString("view=full&species=9606");
+        this.request.addHeader("Host", "reactome.org");
+        for (int i = 1; i < this.headers; i++) {
+            this.request.addHeader("X-Benchmark-" + i, "value-" + i);
+        }
+    }
+
+    @Benchmark
+    public String getProxyURL() {
+        return this.servlet.getProxyURL(this.request);
+    }
+
+    @Benchmark
+    public HttpGet setProxyRequestHeaders() {
+        HttpGet get = new HttpGet("http://upstream.example.org:8080/content/detail/R-HSA-199420");
+        this.servlet.setProxyRequestHeaders(this.request, get);
+        return get;
+    }
+}
@@ -0,0 +1,63 @@
+package org.reactome.server.utils.proxy;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletConfig;
+
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full GET round trip through the {@link ProxyServlet} against a local stub upstream,
+ * for different body sizes and encodings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProxyResponseBenchmark {
+
+    @Param({"1024", "65536", "1048576"})
+    public int bodySize;
+
+    @Param({"identity", "gzip"})
+    public String encoding;
+
+    private StubUpstream upstream;
+    private ProxyServlet servlet;
+    private MockHttpServletRequest request;
+
+    @Setup
+    public void setUp() throws IOException, ServletException {
+        this.upstream = new StubUpstream(this.bodySize, "gzip".equals(this.encoding));
+
+        MockServletConfig config = new MockServletConfig("proxy");
+        config.addInitParameter("proxyProtocol", "http");
+        config.addInitParameter("proxyHost", "127.0.0.1");
+        config.addInitParameter("proxyPort", Integer.toString(this.upstream.getPort()));
+        config.addInitParameter("proxyPath", "/body");
+        this.servlet = new ProxyServlet();
+        this.servlet.init(config);
+
+        this.request = new MockHttpServletRequest("GET", "/proxy");
+        this.request.setServletPath("/proxy");
+        this.request.addHeader("Accept-Encoding", "gzip");
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.servlet.destroy();
+        this.upstream.close();
+    }
+
+    @Benchmark
+    public int doGet() throws IOException, ServletException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        this.servlet.doGet(this.request, response);
+        return response.getContentAsByteArray().length;
+    }
+}
@@ -0,0 +1,61 @@
+package org.reactome.server.utils.proxy;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletConfig;
+
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Static file serving through the {@link StaticFilesProxyServlet} for different file sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StaticFilesBenchmark {
+
+    @Param({"1024", "65536", "1048576"})
+    public int fileSize;
+
+    private Path folder;
+    private StaticFilesProxyServlet servlet;
+    private MockHttpServletRequest request;
+
+    @Setup
+    public void setUp() throws IOException, ServletException {
+        this.folder = Files.createTempDirectory("static-files-benchmark");
+        byte[] content = new byte[this.fileSize];
+        for (int i = 0; i < this.fileSize; i++) content[i] = (byte) ('a' + (i % 26));
+        Files.write(this.folder.resolve("file.txt"), content);
+
+        MockServletConfig config = new MockServletConfig("static");
+        config.addInitParameter("proxyFilePath", this.folder.toString());
+        this.servlet = new StaticFilesProxyServlet();
+        this.servlet.init(config);
+
+        this.request = new MockHttpServletRequest("GET", "/static/file.txt");
+        this.request.setServletPath("/static");
+        this.request.setPathInfo("/file.txt");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(this.folder.toFile());
+    }
+
+    @Benchmark
+    public int doGet() throws IOException, ServletException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        this.servlet.doGet(this.request, response);
+        return response.getContentAsByteArray().length;
+    }
+}
@@ -0,0 +1,62 @@
+package org.reactome.server.utils.proxy;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Minimal upstream server bound to the loopback interface. It answers every
+ * request with the same body, either as is or gzipped.
+ */
+class StubUpstream implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    StubUpstream(int bodySize, boolean gzip) throws IOException {
+        byte[] body = new byte[bodySize];
+        // Repetitive text, so the gzipped variant has a realistic compression ratio
+        for (int i = 0; i < bodySize; i++) body[i] = (byte) ('a' + (i % 26));
+        byte[] payload = gzip ? gzip(body) : body;
+
+        // Without TCP_NODELAY the separate header and body writes add ~40ms of delayed ACK to every response
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 512);
+        this.server.createContext("/", exchange -> {
+            exchange.getRequestBody().close();
+            exchange.getResponseHeaders().set("Content-Type", "text/plain");
+            if (gzip) exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, payload.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(payload);
+            }
+        });
+        this.executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        this.server.setExecutor(this.executor);
+        this.server.start();
+    }
+
+    int getPort() {
+        return this.server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bos)) {
+            out.write(body);
+        }
+        return bos.toByteArray();
+    }
+}
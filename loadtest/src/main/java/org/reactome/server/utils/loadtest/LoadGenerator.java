@@ -0,0 +1,126 @@
+package org.reactome.server.utils.loadtest;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop load generator: every worker sends a request and waits for the
+ * complete response before sending the next one. Requests completed during the
+ * warm-up are not recorded.
+ */
+class LoadGenerator {
+
+    private final String url;
+    private final int concurrency;
+
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+
+    LoadGenerator(String url, int concurrency) {
+        this.url = url;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * @return the latencies (in nanoseconds) of the requests completed after the warm-up, sorted
+     */
+    long[] run(long warmupMillis, long durationMillis) throws InterruptedException, IOException {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(this.concurrency);
+        connectionManager.setDefaultMaxPerRoute(this.concurrency);
+        try (CloseableHttpClient client = HttpClients.custom().setConnectionManager(connectionManager).build()) {
+            long start = System.nanoTime();
+            long recordFrom = start + TimeUnit.MILLISECONDS.toNanos(warmupMillis);
+            long end = recordFrom + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+
+            List<Worker> workers = new ArrayList<>();
+            CountDownLatch done = new CountDownLatch(this.concurrency);
+            for (int i = 0; i < this.concurrency; i++) {
+                Worker worker = new Worker(client, recordFrom, end, done);
+                workers.add(worker);
+                Thread thread = new Thread(worker, "load-generator-" + i);
+                thread.setDaemon(true);
+                thread.start();
+            }
+            done.await();
+
+            int total = 0;
+            for (Worker worker : workers) total += worker.count;
+            long[] latencies = new long[total];
+            int offset = 0;
+            for (Worker worker : workers) {
+                System.arraycopy(worker.latencies, 0, latencies, offset, worker.count);
+                offset += worker.count;
+            }
+            Arrays.sort(latencies);
+            return latencies;
+        }
+    }
+
+    long getErrors() {
+        return this.errors.get();
+    }
+
+    long getBytes() {
+        return this.bytes.get();
+    }
+
+    private class Worker implements Runnable {
+        private final CloseableHttpClient client;
+        private final long recordFrom;
+        private final long end;
+        private final CountDownLatch done;
+        private long[] latencies = new long[1024];
+        private int count = 0;
+
+        private Worker(CloseableHttpClient client, long recordFrom, long end, CountDownLatch done) {
+            this.client = client;
+            this.recordFrom = recordFrom;
+            this.end = end;
+            this.done = done;
+        }
+
+        @Override
+        public void run() {
+            try {
+                long now;
+                while ((now = System.nanoTime()) < this.end) {
+                    boolean failed;
+                    long length = 0;
+                    try {
+                        HttpResponse response = this.client.execute(new HttpGet(url));
+                        byte[] body = EntityUtils.toByteArray(response.getEntity());
+                        length = body == null ? 0 : body.length;
+                        failed = response.getStatusLine().getStatusCode() >= 400;
+                    } catch (IOException e) {
+                        failed = true;
+                    }
+                    if (now < this.recordFrom) continue;
+                    if (failed) {
+                        errors.incrementAndGet();
+                        continue;
+                    }
+                    bytes.addAndGet(length);
+                    if (this.count == this.latencies.length) {
+                        this.latencies = Arrays.copyOf(this.latencies, this.count * 2);
+                    }
+                    this.latencies[this.count++] = System.nanoTime() - now;
+                }
+            } finally {
+                this.done.countDown();
+            }
+        }
+    }
+}
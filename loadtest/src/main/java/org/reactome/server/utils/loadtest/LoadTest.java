@@ -0,0 +1,146 @@
+package org.reactome.server.utils.loadtest;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.commons.io.FileUtils;
+import org.reactome.server.utils.proxy.ProxyServlet;
+import org.reactome.server.utils.proxy.StaticFilesProxyServlet;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end load test. It starts an embedded Tomcat hosting the {@link ProxyServlet} (/proxy/*)
+ * and the {@link StaticFilesProxyServlet} (/static/*), a local stub upstream for the proxy and
+ * drives one of them with a closed-loop load generator. Everything runs on the loopback interface.
+ * <p>
+ * Configured with system properties:
+ * <pre>
+ * target       proxy | static                          (proxy)
+ * concurrency  number of concurrent clients            (64)
+ * warmup       warm-up time in seconds, not recorded    (5)
+ * duration     measured time in seconds                (30)
+ * latency      upstream latency in milliseconds        (20)
+ * payloadSize  upstream (or static file) size in bytes (16384)
+ * gzip         gzip the upstream responses             (false)
+ * errorRate    fraction of upstream 500 responses      (0.0)
+ * maxThreads   Tomcat worker threads                   (200)
+ * proxy.*      any ProxyServlet init-param, e.g. -Dproxy.virtualThreads=true
+ * </pre>
+ * e.g. java -Dconcurrency=256 -Dlatency=100 -jar loadtest.jar
+ * <p>
+ * The load generator and the stub upstream run in this JVM and use one thread per client and
+ * per in-flight request, so the total of live threads grows with the concurrency in any case.
+ * The container threads (Tomcat workers) are reported separately: they are the ones serving
+ * the requests and, with -Dproxy.virtualThreads=true (Java 21), they stay flat as the number
+ * of in-flight requests grows.
+ */
+public class LoadTest {
+
+    private static final String PROXY_PARAMETER_PREFIX = "proxy.";
+
+    public static void main(String[] args) throws Exception {
+        String target = System.getProperty("target", "proxy");
+        int concurrency = Integer.getInteger("concurrency", 64);
+        long warmup = TimeUnit.SECONDS.toMillis(Long.getLong("warmup", 5L));
+        long duration = TimeUnit.SECONDS.toMillis(Long.getLong("duration", 30L));
+        long latency = Long.getLong("latency", 20L);
+        int payloadSize = Integer.getInteger("payloadSize", 16384);
+        boolean gzip = Boolean.getBoolean("gzip");
+        double errorRate = Double.parseDouble(System.getProperty("errorRate", "0.0"));
+        int maxThreads = Integer.getInteger("maxThreads", 200);
+
+        Path work = Files.createTempDirectory("loadtest");
+        try (StubUpstream upstream = new StubUpstream(latency, payloadSize, gzip, errorRate)) {
+            byte[] content = new byte[payloadSize];
+            for (int i = 0; i < payloadSize; i++) content[i] = (byte) ('a' + (i % 26));
+            Files.write(work.resolve("file.txt"), content);
+
+            Tomcat tomcat = startTomcat(work, upstream.getPort(), maxThreads);
+            try {
+                int port = tomcat.getConnector().getLocalPort();
+                String url = "static".equals(target)
+                        ? "http://127.0.0.1:" + port + "/static/file.txt"
+                        : "http://127.0.0.1:" + port + "/proxy/data";
+
+                System.out.printf(Locale.ROOT, "Target %s, %d clients, %ds warm-up, %ds measured, upstream latency %dms, payload %d bytes%s, error rate %.3f%n",
+                        url, concurrency, warmup / 1000, duration / 1000, latency, payloadSize, gzip ? " (gzip)" : "", errorRate);
+
+                ResourceSampler sampler = new ResourceSampler(warmup);
+                sampler.start();
+                LoadGenerator generator = new LoadGenerator(url, concurrency);
+                long[] latencies = generator.run(warmup, duration);
+                sampler.finish();
+
+                report(latencies, generator, sampler, duration);
+            } finally {
+                tomcat.stop();
+                tomcat.destroy();
+            }
+        } finally {
+            FileUtils.deleteDirectory(work.toFile());
+        }
+    }
+
+    private static Tomcat startTomcat(Path work, int upstreamPort, int maxThreads) throws LifecycleException, IOException {
+        Tomcat tomcat = new Tomcat();
+        tomcat.setBaseDir(work.resolve("tomcat").toString());
+        tomcat.setPort(0);
+        tomcat.getConnector().setProperty("maxThreads", Integer.toString(maxThreads));
+        tomcat.getConnector().setProperty("maxConnections", "10000");
+
+        Path docBase = Files.createDirectories(work.resolve("webapp"));
+        Context context = tomcat.addContext("", docBase.toString());
+
+        Wrapper proxy = Tomcat.addServlet(context, "proxy", new ProxyServlet());
+        proxy.addInitParameter("proxyProtocol", "http");
+        proxy.addInitParameter("proxyHost", "127.0.0.1");
+        proxy.addInitParameter("proxyPort", Integer.toString(upstreamPort));
+        proxy.addInitParameter("proxyPath", "/upstream");
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith(PROXY_PARAMETER_PREFIX)) {
+                proxy.addInitParameter(name.substring(PROXY_PARAMETER_PREFIX.length()), System.getProperty(name));
+            }
+        }
+        proxy.setAsyncSupported(true);
+        context.addServletMappingDecoded("/proxy/*", "proxy");
+
+        Wrapper files = Tomcat.addServlet(context, "static", new StaticFilesProxyServlet());
+        files.addInitParameter("proxyFilePath", work.toString());
+        context.addServletMappingDecoded("/static/*", "static");
+
+        tomcat.start();
+        return tomcat;
+    }
+
+    private static void report(long[] latencies, LoadGenerator generator, ResourceSampler sampler, long duration) {
+        double seconds = duration / 1000.0;
+        System.out.println();
+        System.out.printf(Locale.ROOT, "Requests      %d ok, %d errors%n", latencies.length, generator.getErrors());
+        System.out.printf(Locale.ROOT, "Throughput    %.1f req/s, %.2f MB/s%n", latencies.length / seconds, generator.getBytes() / seconds / (1024 * 1024));
+        if (latencies.length > 0) {
+            System.out.printf(Locale.ROOT, "Latency (ms)  p50 %.2f  p99 %.2f  p999 %.2f  max %.2f%n",
+                    millis(percentile(latencies, 0.50)), millis(percentile(latencies, 0.99)),
+                    millis(percentile(latencies, 0.999)), millis(latencies[latencies.length - 1]));
+        }
+        System.out.printf(Locale.ROOT, "Heap (MB)     avg %d  max %d%n", sampler.getHeapAverage() / (1024 * 1024), sampler.getHeapMax() / (1024 * 1024));
+        System.out.printf(Locale.ROOT, "Threads       avg %d  max %d (whole JVM, including the load generator and the stub upstream)%n",
+                sampler.getThreadAverage(), sampler.getThreadMax());
+        System.out.printf(Locale.ROOT, "Container     avg %d  max %d (Tomcat worker threads)%n",
+                sampler.getContainerThreadAverage(), sampler.getContainerThreadMax());
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
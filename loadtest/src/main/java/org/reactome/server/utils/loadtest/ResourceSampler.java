@@ -0,0 +1,113 @@
+package org.reactome.server.utils.loadtest;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Samples the heap usage, the number of live threads of the JVM and, among them, the
+ * number of container (Tomcat worker) threads every 100ms, once the given delay (the
+ * warm-up of the load test) has passed.
+ * <p>
+ * The JVM total includes the load generator and the stub upstream threads, which grow
+ * with the concurrency whatever the servlets do, so the threads used to serve the
+ * requests are only reflected by the container count.
+ */
+class ResourceSampler extends Thread {
+
+    private static final long INTERVAL = 100;
+    /**
+     * Tomcat names its connector worker threads e.g. "http-nio-8080-exec-12"
+     */
+    private static final String CONTAINER_THREAD_PREFIX = "http-";
+    private static final String CONTAINER_THREAD_MARKER = "-exec-";
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private final long delay;
+    private volatile boolean active = true;
+    private long samples = 0;
+    private long heapSum = 0;
+    private long heapMax = 0;
+    private long threadSum = 0;
+    private int threadMax = 0;
+    private long containerThreadSum = 0;
+    private int containerThreadMax = 0;
+
+    ResourceSampler(long delay) {
+        super("resource-sampler");
+        this.delay = delay;
+        setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+        try {
+            Thread.sleep(this.delay);
+        } catch (InterruptedException e) {
+            return;
+        }
+        while (this.active) {
+            long heap = this.memory.getHeapMemoryUsage().getUsed();
+            int live = this.threads.getThreadCount();
+            int container = countContainerThreads();
+            synchronized (this) {
+                this.samples++;
+                this.heapSum += heap;
+                this.heapMax = Math.max(this.heapMax, heap);
+                this.threadSum += live;
+                this.threadMax = Math.max(this.threadMax, live);
+                this.containerThreadSum += container;
+                this.containerThreadMax = Math.max(this.containerThreadMax, container);
+            }
+            try {
+                Thread.sleep(INTERVAL);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private int countContainerThreads() {
+        int count = 0;
+        // Only the platform threads are listed, the virtual ones are not
+        for (ThreadInfo info : this.threads.getThreadInfo(this.threads.getAllThreadIds())) {
+            if (info == null) continue;
+            String name = info.getThreadName();
+            if (name.startsWith(CONTAINER_THREAD_PREFIX) && name.contains(CONTAINER_THREAD_MARKER)) count++;
+        }
+        return count;
+    }
+
+    void finish() throws InterruptedException {
+        this.active = false;
+        interrupt();
+        join();
+    }
+
+    synchronized long getHeapAverage() {
+        return this.samples == 0 ? 0 : this.heapSum / this.samples;
+    }
+
+    synchronized long getHeapMax() {
+        return this.heapMax;
+    }
+
+    synchronized long getThreadAverage() {
+        return this.samples == 0 ? 0 : this.threadSum / this.samples;
+    }
+
+    synchronized int getThreadMax() {
+        return this.threadMax;
+    }
+
+    synchronized long getContainerThreadAverage() {
+        return this.samples == 0 ? 0 : this.containerThreadSum / this.samples;
+    }
+
+    synchronized int getContainerThreadMax() {
+        return this.containerThreadMax;
+    }
+}
@@ -0,0 +1,80 @@
+package org.reactome.server.utils.loadtest;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Upstream server bound to the loopback interface that the proxy forwards the requests to.
+ * Every response waits for the configured latency and carries the same payload (optionally
+ * gzipped). A configurable fraction of the requests fails with a 500 error.
+ */
+class StubUpstream implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    StubUpstream(long latency, int payloadSize, boolean gzip, double errorRate) throws IOException {
+        byte[] body = new byte[payloadSize];
+        // Repetitive text, so the gzipped variant has a realistic compression ratio
+        for (int i = 0; i < payloadSize; i++) body[i] = (byte) ('a' + (i % 26));
+        byte[] payload = gzip ? gzip(body) : body;
+        byte[] error = "Injected error".getBytes();
+
+        // Without TCP_NODELAY the separate header and body writes add ~40ms of delayed ACK to every response
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 4096);
+        this.server.createContext("/", exchange -> {
+            try {
+                exchange.getRequestBody().close();
+                if (latency > 0) Thread.sleep(latency);
+                if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                    exchange.sendResponseHeaders(500, error.length);
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(error);
+                    }
+                    return;
+                }
+                exchange.getResponseHeaders().set("Content-Type", "text/plain");
+                if (gzip) exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                exchange.sendResponseHeaders(200, payload.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(payload);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                exchange.close();
+            }
+        });
+        // The latency is simulated by sleeping, so every in-flight request needs its own thread
+        this.executor = Executors.newCachedThreadPool();
+        this.server.setExecutor(this.executor);
+        this.server.start();
+    }
+
+    int getPort() {
+        return this.server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bos)) {
+            out.write(body);
+        }
+        return bos.toByteArray();
+    }
+}
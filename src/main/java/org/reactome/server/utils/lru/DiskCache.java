@@ -0,0 +1,191 @@
+package org.reactome.server.utils.lru;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Disk cache on top of the {@link LruFolderContentChecker}. Entries are stored in a
+ * hash-sharded layout (root/ab/cd/abcd...) so no folder grows with the number of
+ * entries, and every entry is written to a hidden temporary file that is atomically
+ * renamed once complete, so readers never see partial content.
+ * <p>
+ * The size of the cache is kept under control by the checker, which also tracks
+ * the accesses done through {@link #get(String)}.
+ * <pre>
+ * DiskCache cache = new DiskCache(pathDirectory, maxSize, threshold, time, ttl);
+ * cache.start();
+ * cache.put(key, inputStream);
+ * try (ReadableByteChannel channel = cache.get(key)) { ... }
+ * cache.close();
+ * </pre>
+ */
+@SuppressWarnings("unused")
+public class DiskCache implements Closeable {
+
+    //************************/
+    //***   Constructors   ***/
+    //************************/
+    public DiskCache(String pathDirectory, Long maxSize, Long threshold, Long time) {
+        this(new LruFolderContentChecker(pathDirectory, maxSize, threshold, time));
+    }
+
+    public DiskCache(String pathDirectory, Long maxSize, Long threshold, Long time, Long ttl) {
+        this(new LruFolderContentChecker(pathDirectory, maxSize, threshold, time, ttl));
+    }
+
+    private DiskCache(LruFolderContentChecker checker) {
+        this.checker = checker;
+        this.checker.setRecursive(true);
+        this.root = Paths.get(checker.getPathDirectory());
+    }
+
+    //**************************/
+    //***   Public methods   ***/
+    //**************************/
+
+    /**
+     * Starts monitoring the size of the cache
+     */
+    public void start() {
+        this.checker.start();
+    }
+
+    /**
+     * @return the checker keeping the cache size under control, to register handlers, metrics or snapshots
+     */
+    public LruFolderContentChecker getChecker() {
+        return this.checker;
+    }
+
+    /**
+     * Stores the content under the given key, replacing any previous entry
+     *
+     * @param key     the key of the entry
+     * @param content the content to be stored. It is not closed by this method
+     * @throws IOException if the content cannot be written
+     */
+    public void put(String key, InputStream content) throws IOException {
+        String name = getName(key);
+        write(name, content);
+        this.checker.track(name);
+    }
+
+    /**
+     * Stores the content under the given key, reserving its space in the cache before writing it
+     *
+     * @param key     the key of the entry
+     * @param content the content to be stored. It is not closed by this method
+     * @param length  the size of the content
+     * @param timeout maximum time (in milliseconds) to wait for the space to be available
+     * @return true if the entry has been stored, false if there was no space for it
+     * @throws IOException          if the content cannot be written
+     * @throws InterruptedException if the thread is interrupted while waiting for space
+     */
+    public boolean put(String key, InputStream content, long length, long timeout) throws IOException, InterruptedException {
+        if (!this.checker.reserve(length, timeout)) return false;
+        String name = getName(key);
+        try {
+            write(name, content);
+        } catch (IOException e) {
+            this.checker.release(length);
+            throw e;
+        }
+        this.checker.release(length, name);
+        return true;
+    }
+
+    /**
+     * @param key the key of the entry
+     * @return a channel to stream the content of the entry or null if the entry is not cached
+     * @throws IOException if the entry exists but cannot be opened
+     */
+    public ReadableByteChannel get(String key) throws IOException {
+        String name = getName(key);
+        try {
+            FileChannel channel = FileChannel.open(this.root.resolve(name), StandardOpenOption.READ);
+            this.checker.touch(name);
+            return channel;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    public boolean contains(String key) {
+        return Files.isRegularFile(this.root.resolve(getName(key)));
+    }
+
+    /**
+     * @param key the key of the entry
+     * @return true if the entry existed and has been deleted
+     * @throws IOException if the entry cannot be deleted
+     */
+    public boolean remove(String key) throws IOException {
+        String name = getName(key);
+        boolean deleted = Files.deleteIfExists(this.root.resolve(name));
+        this.checker.untrack(name);
+        return deleted;
+    }
+
+    /**
+     * Stops monitoring the size of the cache. The cached content is kept on disk.
+     */
+    @Override
+    public void close() {
+        this.checker.interrupt();
+    }
+
+    //***************************/
+    //***   Private methods   ***/
+    //***************************/
+
+    /**
+     * @return the path of the entry relative to the root, e.g. "ab/cd/abcd0123..."
+     */
+    private String getName(String key) {
+        String hash = sha1(key);
+        return hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash;
+    }
+
+    private void write(String name, InputStream content) throws IOException {
+        Path target = this.root.resolve(name);
+        Path shard = Files.createDirectories(target.getParent());
+        // Hidden temporary files are ignored by the checker until they are renamed
+        Path tmp = Files.createTempFile(shard, ".", ".tmp");
+        try {
+            Files.copy(content, tmp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static String sha1(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(UTF_8));
+            char[] hex = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hex[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+                hex[i * 2 + 1] = HEX[digest[i] & 0xF];
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-1
+            throw new IllegalStateException(e);
+        }
+    }
+
+    //******************************/
+    //***   Private attributes   ***/
+    //******************************/
+    private final LruFolderContentChecker checker;
+    private final Path root;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+}
@@ -4,15 +4,19 @@ import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.lang.management.ManagementFactory;
+import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileTime;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 
 /**
@@ -37,7 +41,7 @@ public class LruFolderContentChecker extends Thread {
         this.threshold = threshold;
         this.time = time;
         this.ttl = FileTime.from(0L, TimeUnit.MILLISECONDS);
-        this.handlers = new LinkedList<>();
+        this.handlers = new CopyOnWriteArrayList<>();
     }
 
     public LruFolderContentChecker(String pathDirectory, Long maxSize, Long threshold, Long time, Long ttl) {
@@ -48,88 +52,131 @@ public class LruFolderContentChecker extends Thread {
         this.threshold = threshold;
         this.time = time;
         this.ttl = FileTime.from(ttl, TimeUnit.MILLISECONDS);
-        this.handlers = new LinkedList<>();
+        this.handlers = new CopyOnWriteArrayList<>();
     }
 
     public boolean addCheckerFileDeletedHandler(LruFolderContentCheckerFileDeletedHandler handler) {
         return this.handlers.add(handler);
     }
 
+    /**
+     * Enables the periodic persistence of the folder index. When a snapshot is found at start-up the first
+     * eviction decisions are taken from it, while the folder is reconciled in the background.
+     *
+     * @param snapshotInterval minimum time (in milliseconds) between two snapshots. null disables them
+     */
+    public void setSnapshotInterval(Long snapshotInterval) {
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * @param snapshotFile path of the index snapshot. Defaults to a hidden file next to the monitored folder
+     */
+    public void setSnapshotFile(String snapshotFile) {
+        this.snapshotFile = Paths.get(snapshotFile);
+    }
+
+    /**
+     * @param metrics hook notified of the scans, evictions and handler notifications of this checker
+     */
+    public void setMetrics(LruFolderContentCheckerMetrics metrics) {
+        this.stats.setMetrics(metrics);
+    }
+
     //*************************/
     //***   Public method   ***/
     //*************************/
     @Override
     public void run() {
-        Long currentSize;
-        PriorityQueue<BasicFileAttributesAndPath> minHeap;
         //noinspection InfiniteLoopStatement
         try {
             log.info("LRU check started");
+            registerMBean();
+            loadSnapshot();
             while (active) {
-                //Check the current size of the folder.
-                currentSize = getFolderSize();
-                if (currentSize != null) {
-                    //This is used to force the min heap to that size. Then it avoids to increment the space.
-                    String[] dirList = this.directory.list();
-                    int heapSize = Objects.requireNonNull(dirList).length;
-                    //heapSize is zero when the directory does not have files.
-                    if (heapSize != 0) {
-                        //PriorityQueue of the structure to store the BasicFileAttributes and the Path, to be able to sort them using the
-                        //lastAccessTime.
-                        //This compare allows us to sort the elements by the lastAccessTime.
-                        minHeap = new PriorityQueue<>(heapSize, Comparator.comparing(o -> o.getAttr().lastAccessTime()));
-                        //Only check the content of the directory if the maximum size is smaller than the current size plus the threshold.
-                        //Example: maxSize = 10Gb; currentSize = 8Gb; threshold = 1Gb;
-                        //10 < (8 + 1) --> false
-                        if (this.maxSize < (currentSize + this.threshold)) {
-                            //Traverse all the
-                            BasicFileAttributes file;
-                            FileTime now = FileTime.from(System.currentTimeMillis(), TimeUnit.MILLISECONDS);
-                            for (String node : dirList) {
-                                file = Files.readAttributes(Paths.get(getPathFile(node)), BasicFileAttributes.class);
-                                // To compare with the current time(now), get the file lastAccessTime plus one week(ttl) as fileTime
-                                Long fileTimePlusOneWeek = file.lastAccessTime().toMillis() + this.ttl.toMillis();
-                                FileTime fileTime = FileTime.from(fileTimePlusOneWeek, TimeUnit.MILLISECONDS);
-                                // Adding the file to minHeap when now is occurs after fileTime
-                                // Example: now = 20200812 fileTime = 20200715
-                                // (20200812.CompareTo(20200715) > 0 ) --> true, the file is an old file
-                                if (now.compareTo(fileTime) > 0) {
-                                    minHeap.add(new BasicFileAttributesAndPath(file, getPathFile(node)));
-                                }
-                            }
-
-                            if (minHeap.size() > 0) {
-                                while (this.maxSize < (currentSize + this.threshold)) {
-                                    if (minHeap.isEmpty()) break;
-
-                                    //Printing the top element and removing it from the PriorityQueue container
-                                    BasicFileAttributesAndPath attrAndPath = minHeap.poll();
-                                    if (attrAndPath != null) {
-                                        File toDelete = new File(attrAndPath.getPath());
-                                        if (toDelete.isFile()) {
-                                            FileUtils.forceDelete(toDelete);
-                                            for (LruFolderContentCheckerFileDeletedHandler handler : this.handlers) {
-                                                handler.onLruFolderContentCheckerFileDeleted(attrAndPath.getPath());
-                                            }
-                                        }
-                                    }
-                                    currentSize = getFolderSize();
-                                }
-                            }
-                        }
-                    }
-                } else {
-                    log.error("Directory " + this.pathDirectory + " to check does not exist");
-                }
+                check();
                 if (active) Thread.sleep(this.time);
             }
         } catch (InterruptedException e) {
             log.info(e.getMessage());
         } catch (IOException e) {
             log.error(e.getMessage(), e);
+        } finally {
+            writeSnapshot();
+            unregisterMBean();
         }
     }
 
+    /**
+     * Reserves space in the folder before writing a file into it. The pending bytes are accounted
+     * together with the folder content, so a burst of writes cannot overshoot the maximum size
+     * between two checks. When the bytes do not fit, the least recently used files are evicted
+     * straight away and, if that is still not enough, the call waits for other reservations to be
+     * released or for files to become evictable until the timeout expires.
+     * <p>
+     * Every successful reservation must be followed by {@link #release(long)} or
+     * {@link #release(long, String)} once the file has been written (or the write has failed).
+     *
+     * @param bytes   the size of the file about to be written
+     * @param timeout maximum time to wait (in milliseconds). 0 fails fast
+     * @return true if the space has been reserved, false otherwise
+     * @throws IOException          if a file could not be evicted
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public boolean reserve(long bytes, long timeout) throws IOException, InterruptedException {
+        if (bytes < 0) throw new IllegalArgumentException("Cannot reserve a negative number of bytes");
+        if (bytes > this.maxSize) return false;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        while (true) {
+            long current = this.reserved.get();
+            if (this.index.getSize() + current + bytes <= this.maxSize) {
+                if (this.reserved.compareAndSet(current, current + bytes)) return true;
+                continue;
+            }
+            if (canEvict()) {
+                // Frees the threshold as well so the following reservations do not have to evict again
+                evict(this.maxSize - Math.max(this.threshold, bytes), false);
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) return false;
+            LockSupport.parkNanos(this, Math.min(remaining, RESERVE_RETRY_NANOS));
+            if (Thread.interrupted()) throw new InterruptedException("Interrupted while reserving " + bytes + " bytes");
+        }
+    }
+
+    /**
+     * Releases bytes previously reserved with {@link #reserve(long, long)}
+     *
+     * @param bytes the number of bytes reserved
+     */
+    public void release(long bytes) {
+        this.reserved.addAndGet(-bytes);
+    }
+
+    /**
+     * Releases bytes previously reserved with {@link #reserve(long, long)} and accounts the file that has
+     * been written with them, so it is tracked straight away instead of waiting for the next check.
+     *
+     * @param bytes    the number of bytes reserved
+     * @param fileName the name of the written file, relative to the monitored folder
+     */
+    public void release(long bytes, String fileName) {
+        try {
+            track(fileName);
+        } finally {
+            release(bytes);
+        }
+    }
+
+    /**
+     * @param recursive true to also monitor the files in the subfolders. In that case hidden files
+     *                  and folders (starting with '.') are ignored, so they can be used for temporary content
+     */
+    public void setRecursive(boolean recursive) {
+        this.recursive = recursive;
+    }
+
     public void setLoggerName(String loggerName) {
         log = LoggerFactory.getLogger(loggerName);
     }
@@ -141,6 +188,90 @@ public class LruFolderContentChecker extends Thread {
         super.interrupt();
     }
 
+    //***************************/
+    //***   Package methods   ***/
+    //***************************/
+
+    /**
+     * Runs one checking cycle: refreshes the index (unless it is still being reconciled from a
+     * snapshot), evicts the least recently used files if needed and persists the index when it is due.
+     */
+    void check() throws IOException {
+        if (!this.directory.isDirectory()) {
+            log.error("Directory " + this.pathDirectory + " to check does not exist");
+            return;
+        }
+        if (this.reconciled) scan();
+        //Only evict if the maximum size is smaller than the current size (reserved bytes included) plus the threshold.
+        //Example: maxSize = 10Gb; currentSize = 8Gb; threshold = 1Gb;
+        //10 < (8 + 1) --> false
+        evict(this.maxSize - this.threshold, true);
+        if (this.snapshotInterval != null && System.currentTimeMillis() - this.lastSnapshot >= this.snapshotInterval) {
+            writeSnapshot();
+        }
+        this.stats.recordSuccessfulRun();
+    }
+
+    /**
+     * Adds (or refreshes) a file in the index without waiting for the next scan
+     *
+     * @param fileName the name of the file, relative to the monitored folder
+     */
+    void track(String fileName) {
+        try {
+            BasicFileAttributes attr = Files.readAttributes(Paths.get(getPathFile(fileName)), BasicFileAttributes.class);
+            if (attr.isRegularFile()) index(fileName, attr);
+        } catch (IOException e) {
+            log.error("Access error in the " + getPathFile(fileName) + " file.", e);
+        }
+    }
+
+    /**
+     * Records an access to a file, for file systems mounted without access time updates
+     *
+     * @param fileName the name of the file, relative to the monitored folder
+     */
+    void touch(String fileName) {
+        this.index.touch(fileName, System.currentTimeMillis());
+    }
+
+    /**
+     * Removes a file from the index once it has been deleted by its owner
+     *
+     * @param fileName the name of the file, relative to the monitored folder
+     */
+    void untrack(String fileName) {
+        this.index.remove(fileName);
+    }
+
+    String getPathDirectory() {
+        return this.pathDirectory;
+    }
+
+    long getMaxSize() {
+        return this.maxSize;
+    }
+
+    long getThreshold() {
+        return this.threshold;
+    }
+
+    long getTrackedBytes() {
+        return this.index.getSize();
+    }
+
+    int getTrackedFiles() {
+        return this.index.getFileCount();
+    }
+
+    long getReservedBytes() {
+        return this.reserved.get();
+    }
+
+    LruFolderContentCheckerStats getStats() {
+        return this.stats;
+    }
+
     //***************************/
     //***   Private methods   ***/
     //***************************/
@@ -148,22 +279,229 @@ public class LruFolderContentChecker extends Thread {
         return new StringBuilder().append(this.pathDirectory).append("/").append(file).toString();
     }
 
-    private Long getFolderSize() {
-        Long result = null;
-        if (this.directory.isDirectory()) {
-            result = 0L;
-            for (String file : this.directory.list()) {
-                try {
-                    Path pathFile = Paths.get(getPathFile(file));
-                    if (Files.isRegularFile(pathFile)) {
-                        result += Files.size(Paths.get(getPathFile(file)));
+    /**
+     * Stats every file in the folder, updating the index and dropping the entries of the files that are gone
+     */
+    private void scan() {
+        long start = System.nanoTime();
+        Set<String> found = this.recursive ? scanTree() : scanFolder();
+        if (found == null) return;
+        this.index.retainAll(found);
+        this.stats.recordScan(System.nanoTime() - start, this.index.getFileCount(), this.index.getSize());
+    }
+
+    private Set<String> scanFolder() {
+        String[] dirList = this.directory.list();
+        if (dirList == null) return null;
+        Set<String> found = new HashSet<>(dirList.length);
+        for (String node : dirList) {
+            try {
+                BasicFileAttributes attr = Files.readAttributes(Paths.get(getPathFile(node)), BasicFileAttributes.class);
+                if (attr.isRegularFile()) {
+                    index(node, attr);
+                    found.add(node);
+                }
+            } catch (IOException e) {
+                log.error("Access error in the " + getPathFile(node) + " file.", e);
+            }
+        }
+        return found;
+    }
+
+    private Set<String> scanTree() {
+        Path root = this.directory.toPath();
+        Set<String> found = new HashSet<>(Math.max(16, this.index.getFileCount() * 2));
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    return isHidden(dir) && !dir.equals(root) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile() && !isHidden(file)) {
+                        String name = root.relativize(file).toString().replace(File.separatorChar, '/');
+                        index(name, attrs);
+                        found.add(name);
                     }
-                } catch (IOException e) {
-                    log.error("Access error in the " + getPathFile(file) + " file.", e);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    log.error("Access error in the " + file + " file.", e);
+                    return FileVisitResult.CONTINUE;
                 }
+            });
+        } catch (IOException e) {
+            log.error("Access error in the " + this.pathDirectory + " directory.", e);
+            return null;
+        }
+        return found;
+    }
+
+    private static boolean isHidden(Path path) {
+        return path.getFileName().toString().startsWith(".");
+    }
+
+    /**
+     * Indexes a file keeping the most recent between its access time and the last access recorded by {@link #touch(String)}
+     */
+    private void index(String name, BasicFileAttributes attr) {
+        long lastAccess = attr.lastAccessTime().toMillis();
+        LruFolderIndex.Entry entry = this.index.get(name);
+        if (entry != null && entry.getLastAccess() > lastAccess) lastAccess = entry.getLastAccess();
+        this.index.put(name, attr.size(), lastAccess);
+    }
+
+    /**
+     * @return false when the last eviction ran out of candidates and neither the index has changed nor
+     * any file has gone past its ttl since then, so evicting again would not free anything
+     */
+    private boolean canEvict() {
+        return !this.evictionExhausted
+                || this.index.getModifications() != this.evictionModifications
+                || System.currentTimeMillis() >= this.evictionRetryTime;
+    }
+
+    /**
+     * Deletes the least recently accessed files, older than the ttl, until the size of the folder
+     * plus the reserved bytes is below the limit. The handlers are notified once the eviction lock
+     * has been released.
+     *
+     * @param limit the size (in bytes) the folder has to be reduced to
+     * @param cycle  true when called by the periodic check, false when triggered by a reservation
+     */
+    private void evict(long limit, boolean cycle) throws IOException {
+        List<String> deleted = new ArrayList<>();
+        try {
+            evict(limit, cycle, deleted);
+        } finally {
+            for (String path : deleted) {
+                for (LruFolderContentCheckerFileDeletedHandler handler : this.handlers) {
+                    long start = System.nanoTime();
+                    handler.onLruFolderContentCheckerFileDeleted(path);
+                    this.stats.recordHandler(System.nanoTime() - start);
+                }
+            }
+        }
+    }
+
+    private void evict(long limit, boolean cycle, List<String> deleted) throws IOException {
+        synchronized (this.evictionLock) {
+            int evictedFiles = 0;
+            long evictedBytes = 0L;
+            try {
+                if (this.index.getSize() + this.reserved.get() <= limit) return;
+                // Read before deleting anything, so a change made while evicting is never missed
+                this.evictionModifications = this.index.getModifications();
+
+                //PriorityQueue of the index entries sorted by the last access time.
+                PriorityQueue<LruFolderIndex.Entry> minHeap = new PriorityQueue<>(
+                        Math.max(1, this.index.getFileCount()),
+                        Comparator.comparingLong(LruFolderIndex.Entry::getLastAccess));
+                long now = System.currentTimeMillis();
+                long nextCandidate = Long.MAX_VALUE;
+                for (LruFolderIndex.Entry entry : this.index.entries()) {
+                    // Only files whose last access plus the time-to-live occurs before now are candidates
+                    // Example: now = 20200812 lastAccess + ttl = 20200715 --> the file is an old file
+                    long expiry = entry.getLastAccess() + this.ttl.toMillis();
+                    if (now > expiry) {
+                        minHeap.add(entry);
+                    } else {
+                        nextCandidate = Math.min(nextCandidate, expiry + 1);
+                    }
+                }
+
+                while (this.index.getSize() + this.reserved.get() > limit && !minHeap.isEmpty()) {
+                    LruFolderIndex.Entry entry = minHeap.poll();
+                    String path = getPathFile(entry.getName());
+                    File toDelete = new File(path);
+                    if (toDelete.isFile()) {
+                        FileUtils.forceDelete(toDelete);
+                        evictedFiles++;
+                        evictedBytes += entry.getSize();
+                        deleted.add(path);
+                    }
+                    this.index.remove(entry.getName());
+                }
+                this.evictionExhausted = this.index.getSize() + this.reserved.get() > limit;
+                this.evictionRetryTime = nextCandidate;
+            } finally {
+                this.stats.recordEviction(evictedFiles, evictedBytes, cycle);
+            }
+        }
+    }
+
+    /**
+     * Loads the index snapshot (if enabled and present) and starts its reconciliation against the folder
+     */
+    private void loadSnapshot() {
+        if (this.snapshotInterval == null) return;
+        Path snapshot = getSnapshotFile();
+        if (!Files.isRegularFile(snapshot)) return;
+        try {
+            this.index.load(snapshot);
+            this.reconciled = false;
+            this.lastSnapshot = System.currentTimeMillis();
+            log.info("LRU index loaded from " + snapshot + " (" + this.index.getFileCount() + " files)");
+        } catch (IOException e) {
+            log.warn("LRU index snapshot " + snapshot + " discarded: " + e.getMessage());
+            return;
+        }
+        Thread reconciler = new Thread(() -> {
+            try {
+                scan();
+                log.info("LRU index reconciled with " + this.pathDirectory);
+            } catch (RuntimeException e) {
+                log.error("LRU index reconciliation with " + this.pathDirectory + " failed, the next check scans the folder again", e);
+            } finally {
+                // Either way the checks take over scanning the folder, so the index does not stay stale
+                this.reconciled = true;
             }
+        }, getName() + "-reconciler");
+        reconciler.setDaemon(true);
+        reconciler.start();
+    }
+
+    private void writeSnapshot() {
+        if (this.snapshotInterval == null || !this.reconciled) return;
+        Path snapshot = getSnapshotFile();
+        try {
+            this.index.write(snapshot);
+        } catch (IOException e) {
+            log.error("LRU index snapshot " + snapshot + " could not be written", e);
         }
-        return result;
+        this.lastSnapshot = System.currentTimeMillis();
+    }
+
+    private void registerMBean() {
+        try {
+            this.objectName = new ObjectName(MBEAN_DOMAIN + ":type=LruFolderContentChecker,name=" + ObjectName.quote(this.pathDirectory));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this.stats, this.objectName);
+        } catch (JMException e) {
+            log.warn("LruFolderContentChecker for " + this.pathDirectory + " could not be registered in JMX: " + e.getMessage());
+            this.objectName = null;
+        }
+    }
+
+    private void unregisterMBean() {
+        if (this.objectName == null) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName);
+        } catch (JMException e) {
+            log.warn("LruFolderContentChecker for " + this.pathDirectory + " could not be unregistered from JMX: " + e.getMessage());
+        }
+        this.objectName = null;
+    }
+
+    private Path getSnapshotFile() {
+        if (this.snapshotFile == null) {
+            File parent = this.directory.getAbsoluteFile().getParentFile();
+            this.snapshotFile = new File(parent, "." + this.directory.getName() + ".lru").toPath();
+        }
+        return this.snapshotFile;
     }
 
     //******************************/
@@ -178,27 +516,20 @@ public class LruFolderContentChecker extends Thread {
     private boolean active = true;
     private static Logger log = LoggerFactory.getLogger("LruFolderContentChecker");
     private List<LruFolderContentCheckerFileDeletedHandler> handlers;
-
-
-    //****************************/
-    //***   Private subclass   ***/
-    //****************************/
-    private class BasicFileAttributesAndPath {
-        private BasicFileAttributes attr = null;
-        private String path = null;
-
-        private BasicFileAttributesAndPath(BasicFileAttributes attr, String path) {
-            this.attr = attr;
-            this.path = path;
-        }
-
-        BasicFileAttributes getAttr() {
-            return attr;
-        }
-
-        String getPath() {
-            return path;
-        }
-    }
+    private final LruFolderIndex index = new LruFolderIndex();
+    private volatile boolean reconciled = true;
+    private boolean recursive = false;
+    private Long snapshotInterval = null;
+    private Path snapshotFile = null;
+    private long lastSnapshot = 0L;
+    private final AtomicLong reserved = new AtomicLong();
+    private final Object evictionLock = new Object();
+    private volatile boolean evictionExhausted = false;
+    private volatile long evictionModifications = -1L;
+    private volatile long evictionRetryTime = 0L;
+    private final LruFolderContentCheckerStats stats = new LruFolderContentCheckerStats(this);
+    private ObjectName objectName = null;
+    private static final String MBEAN_DOMAIN = "org.reactome.server.utils.lru";
+    private static final long RESERVE_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
 
 }
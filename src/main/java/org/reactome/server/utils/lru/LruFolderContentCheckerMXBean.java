@@ -0,0 +1,63 @@
+package org.reactome.server.utils.lru;
+
+import java.util.Map;
+
+/**
+ * Management interface exposed through JMX by every running {@link LruFolderContentChecker}
+ * under "org.reactome.server.utils.lru:type=LruFolderContentChecker,name=[folder path]".
+ */
+public interface LruFolderContentCheckerMXBean {
+
+    String getPathDirectory();
+
+    long getMaxSize();
+
+    long getThreshold();
+
+    long getTrackedBytes();
+
+    int getTrackedFiles();
+
+    long getReservedBytes();
+
+    long getScanCount();
+
+    long getLastScanDurationMillis();
+
+    /**
+     * @return number of scans per duration bucket, keyed by the bucket upper bound ("<=1ms", "<=2ms", ...)
+     */
+    Map<String, Long> getScanDurationHistogram();
+
+    /**
+     * @return number of files evicted by the last periodic check (evictions triggered by reservations not included)
+     */
+    int getLastEvictedFiles();
+
+    long getLastEvictedBytes();
+
+    /**
+     * @return number of files evicted since the start, by the periodic checks and the reservations
+     */
+    long getTotalEvictedFiles();
+
+    long getTotalEvictedBytes();
+
+    /**
+     * @return number of files evicted since the start to make room for reservations
+     */
+    long getReserveEvictedFiles();
+
+    long getReserveEvictedBytes();
+
+    long getHandlerCount();
+
+    long getHandlerTotalMillis();
+
+    long getHandlerMaxMillis();
+
+    /**
+     * @return time (in milliseconds since the epoch) when the last check completed without errors, 0 if none did
+     */
+    long getLastSuccessfulRun();
+}
@@ -0,0 +1,36 @@
+package org.reactome.server.utils.lru;
+
+/**
+ * This interface is to plug the {@link LruFolderContentChecker} into
+ * a metrics system. Every method has an empty default implementation
+ * so only the relevant events need to be implemented.
+ */
+public interface LruFolderContentCheckerMetrics {
+
+    /**
+     * Called after the content of the folder has been scanned
+     *
+     * @param durationNanos time spent scanning the folder
+     * @param files         number of files found
+     * @param bytes         size of the files found
+     */
+    default void onLruFolderScanned(long durationNanos, int files, long bytes) {
+    }
+
+    /**
+     * Called after an eviction (by a check or to make room for a reservation) that deleted at least one file
+     *
+     * @param files number of files deleted
+     * @param bytes size of the deleted files
+     */
+    default void onLruFolderEvicted(int files, long bytes) {
+    }
+
+    /**
+     * Called after a {@link LruFolderContentCheckerFileDeletedHandler} has been notified
+     *
+     * @param durationNanos time spent by the handler
+     */
+    default void onLruFolderHandlerNotified(long durationNanos) {
+    }
+}
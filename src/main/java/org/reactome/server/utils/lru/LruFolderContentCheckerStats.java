@@ -0,0 +1,188 @@
+package org.reactome.server.utils.lru;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Keeps the counters of a {@link LruFolderContentChecker}, exposes them through JMX and
+ * forwards every event to the (optional) pluggable {@link LruFolderContentCheckerMetrics}.
+ */
+class LruFolderContentCheckerStats implements LruFolderContentCheckerMXBean {
+
+    // Scan durations are grouped in power of two buckets: <=1ms, <=2ms, ... <=65536ms and above
+    private static final int HISTOGRAM_BUCKETS = 18;
+
+    private final LruFolderContentChecker checker;
+    private volatile LruFolderContentCheckerMetrics metrics = new LruFolderContentCheckerMetrics() {};
+
+    private final AtomicLong scanCount = new AtomicLong();
+    private final AtomicLong lastScanNanos = new AtomicLong();
+    private final AtomicLongArray scanHistogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+    private final AtomicInteger lastEvictedFiles = new AtomicInteger();
+    private final AtomicLong lastEvictedBytes = new AtomicLong();
+    private final AtomicLong totalEvictedFiles = new AtomicLong();
+    private final AtomicLong totalEvictedBytes = new AtomicLong();
+    private final AtomicLong reserveEvictedFiles = new AtomicLong();
+    private final AtomicLong reserveEvictedBytes = new AtomicLong();
+    private final AtomicLong handlerCount = new AtomicLong();
+    private final AtomicLong handlerTotalNanos = new AtomicLong();
+    private final AtomicLong handlerMaxNanos = new AtomicLong();
+    private final AtomicLong lastSuccessfulRun = new AtomicLong();
+
+    LruFolderContentCheckerStats(LruFolderContentChecker checker) {
+        this.checker = checker;
+    }
+
+    void setMetrics(LruFolderContentCheckerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    //**************************/
+    //***   Record methods   ***/
+    //**************************/
+    void recordScan(long durationNanos, int files, long bytes) {
+        this.scanCount.incrementAndGet();
+        this.lastScanNanos.set(durationNanos);
+        long millis = TimeUnit.NANOSECONDS.toMillis(durationNanos);
+        int bucket = millis <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(millis - 1);
+        this.scanHistogram.incrementAndGet(Math.min(bucket, HISTOGRAM_BUCKETS - 1));
+        this.metrics.onLruFolderScanned(durationNanos, files, bytes);
+    }
+
+    /**
+     * @param cycle true for the eviction of a periodic check (the "last" values), false for one triggered
+     *              by a reservation (only counted in the totals and the reserve counters)
+     */
+    void recordEviction(int files, long bytes, boolean cycle) {
+        if (cycle) {
+            this.lastEvictedFiles.set(files);
+            this.lastEvictedBytes.set(bytes);
+        }
+        if (files == 0) return;
+        this.totalEvictedFiles.addAndGet(files);
+        this.totalEvictedBytes.addAndGet(bytes);
+        if (!cycle) {
+            this.reserveEvictedFiles.addAndGet(files);
+            this.reserveEvictedBytes.addAndGet(bytes);
+        }
+        this.metrics.onLruFolderEvicted(files, bytes);
+    }
+
+    void recordHandler(long durationNanos) {
+        this.handlerCount.incrementAndGet();
+        this.handlerTotalNanos.addAndGet(durationNanos);
+        this.handlerMaxNanos.accumulateAndGet(durationNanos, Math::max);
+        this.metrics.onLruFolderHandlerNotified(durationNanos);
+    }
+
+    void recordSuccessfulRun() {
+        this.lastSuccessfulRun.set(System.currentTimeMillis());
+    }
+
+    //****************************/
+    //***   MXBean interface   ***/
+    //****************************/
+    @Override
+    public String getPathDirectory() {
+        return this.checker.getPathDirectory();
+    }
+
+    @Override
+    public long getMaxSize() {
+        return this.checker.getMaxSize();
+    }
+
+    @Override
+    public long getThreshold() {
+        return this.checker.getThreshold();
+    }
+
+    @Override
+    public long getTrackedBytes() {
+        return this.checker.getTrackedBytes();
+    }
+
+    @Override
+    public int getTrackedFiles() {
+        return this.checker.getTrackedFiles();
+    }
+
+    @Override
+    public long getReservedBytes() {
+        return this.checker.getReservedBytes();
+    }
+
+    @Override
+    public long getScanCount() {
+        return this.scanCount.get();
+    }
+
+    @Override
+    public long getLastScanDurationMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(this.lastScanNanos.get());
+    }
+
+    @Override
+    public Map<String, Long> getScanDurationHistogram() {
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < HISTOGRAM_BUCKETS - 1; i++) {
+            histogram.put("<=" + (1L << i) + "ms", this.scanHistogram.get(i));
+        }
+        histogram.put(">" + (1L << (HISTOGRAM_BUCKETS - 2)) + "ms", this.scanHistogram.get(HISTOGRAM_BUCKETS - 1));
+        return histogram;
+    }
+
+    @Override
+    public int getLastEvictedFiles() {
+        return this.lastEvictedFiles.get();
+    }
+
+    @Override
+    public long getLastEvictedBytes() {
+        return this.lastEvictedBytes.get();
+    }
+
+    @Override
+    public long getTotalEvictedFiles() {
+        return this.totalEvictedFiles.get();
+    }
+
+    @Override
+    public long getTotalEvictedBytes() {
+        return this.totalEvictedBytes.get();
+    }
+
+    @Override
+    public long getReserveEvictedFiles() {
+        return this.reserveEvictedFiles.get();
+    }
+
+    @Override
+    public long getReserveEvictedBytes() {
+        return this.reserveEvictedBytes.get();
+    }
+
+    @Override
+    public long getHandlerCount() {
+        return this.handlerCount.get();
+    }
+
+    @Override
+    public long getHandlerTotalMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(this.handlerTotalNanos.get());
+    }
+
+    @Override
+    public long getHandlerMaxMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(this.handlerMaxNanos.get());
+    }
+
+    @Override
+    public long getLastSuccessfulRun() {
+        return this.lastSuccessfulRun.get();
+    }
+}
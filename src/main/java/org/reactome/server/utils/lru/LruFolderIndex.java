@@ -0,0 +1,196 @@
+package org.reactome.server.utils.lru;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * In-memory index of the files contained in the folder monitored by the
+ * {@link LruFolderContentChecker}. It keeps the size and the last access
+ * time of every file so the eviction decisions do not need to stat the
+ * whole folder, and it can be persisted to (and loaded from) a compact
+ * binary snapshot to speed up the start of the checker.
+ * <p>
+ * Snapshot layout (big endian):
+ * magic (int), version (int), number of entries (int), creation time (long)
+ * followed, per entry, by name length (unsigned short), name (UTF-8),
+ * size (long) and last access time (long).
+ */
+class LruFolderIndex {
+
+    private static final int MAGIC = 0x4C525549; // "LRUI"
+    private static final int VERSION = 1;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong size = new AtomicLong();
+    private final AtomicLong modifications = new AtomicLong();
+
+    //*************************/
+    //***   Index methods   ***/
+    //*************************/
+    void put(String name, long fileSize, long lastAccess) {
+        Entry entry = new Entry(name, fileSize, lastAccess);
+        Entry old = this.entries.put(name, entry);
+        this.size.addAndGet(old == null ? fileSize : fileSize - old.getSize());
+        this.modifications.incrementAndGet();
+    }
+
+    void touch(String name, long lastAccess) {
+        this.entries.computeIfPresent(name, (k, e) -> lastAccess > e.getLastAccess() ? new Entry(k, e.getSize(), lastAccess) : e);
+    }
+
+    Entry get(String name) {
+        return this.entries.get(name);
+    }
+
+    void remove(String name) {
+        Entry old = this.entries.remove(name);
+        if (old != null) {
+            this.size.addAndGet(-old.getSize());
+            this.modifications.incrementAndGet();
+        }
+    }
+
+    /**
+     * Removes every entry whose name is not contained in the given set
+     *
+     * @param names the names of the files still present in the folder
+     */
+    void retainAll(Set<String> names) {
+        for (Entry entry : this.entries.values()) {
+            if (!names.contains(entry.getName()) && this.entries.remove(entry.getName(), entry)) {
+                this.size.addAndGet(-entry.getSize());
+                this.modifications.incrementAndGet();
+            }
+        }
+    }
+
+    Collection<Entry> entries() {
+        return this.entries.values();
+    }
+
+    long getSize() {
+        return this.size.get();
+    }
+
+    int getFileCount() {
+        return this.entries.size();
+    }
+
+    /**
+     * @return a counter increased every time an entry is added, updated or removed (accesses do not count)
+     */
+    long getModifications() {
+        return this.modifications.get();
+    }
+
+    //****************************/
+    //***   Snapshot methods   ***/
+    //****************************/
+
+    /**
+     * Writes the current content of the index to the given file. The snapshot is written to a temporary
+     * file first and then moved into place, so a crash while writing never leaves a truncated snapshot.
+     *
+     * @param snapshot the target file
+     * @throws IOException if the snapshot cannot be written
+     */
+    void write(Path snapshot) throws IOException {
+        Path tmp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+        List<Entry> current = new ArrayList<>(this.entries.values());
+        // FileOutputStream is used on purpose: unlike the NIO channels it is not closed when the thread is interrupted
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp.toFile())))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(current.size());
+            out.writeLong(System.currentTimeMillis());
+            for (Entry entry : current) {
+                byte[] name = entry.getName().getBytes(UTF_8);
+                out.writeShort(name.length);
+                out.write(name);
+                out.writeLong(entry.getSize());
+                out.writeLong(entry.getLastAccess());
+            }
+        }
+        Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Memory-maps the given snapshot and loads its content into this index. Files already
+     * tracked (e.g. written while the snapshot was being loaded) keep their current entry.
+     * Nothing is loaded if the snapshot is not valid.
+     *
+     * @param snapshot the file previously written by {@link #write(Path)}
+     * @throws IOException if the file cannot be read or it is not a valid snapshot
+     */
+    void load(Path snapshot) throws IOException {
+        List<Entry> loaded;
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 20 || buffer.getInt() != MAGIC) {
+                throw new IOException(snapshot + " is not a valid LRU index snapshot");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported LRU index snapshot version " + version + " in " + snapshot);
+            }
+            int count = buffer.getInt();
+            buffer.getLong(); // creation time
+            loaded = new ArrayList<>(count);
+            byte[] name = new byte[256];
+            for (int i = 0; i < count; i++) {
+                int length = buffer.getShort() & 0xFFFF;
+                if (length > name.length) name = new byte[length];
+                buffer.get(name, 0, length);
+                long fileSize = buffer.getLong();
+                long lastAccess = buffer.getLong();
+                loaded.add(new Entry(new String(name, 0, length, UTF_8), fileSize, lastAccess));
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException(snapshot + " is truncated", e);
+        }
+        for (Entry entry : loaded) {
+            if (this.entries.putIfAbsent(entry.getName(), entry) == null) {
+                this.size.addAndGet(entry.getSize());
+                this.modifications.incrementAndGet();
+            }
+        }
+    }
+
+    //***********************/
+    //***   Index entry   ***/
+    //***********************/
+    static class Entry {
+        private final String name;
+        private final long size;
+        private final long lastAccess;
+
+        private Entry(String name, long size, long lastAccess) {
+            this.name = name;
+            this.size = size;
+            this.lastAccess = lastAccess;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        long getSize() {
+            return size;
+        }
+
+        long getLastAccess() {
+            return lastAccess;
+        }
+    }
+}
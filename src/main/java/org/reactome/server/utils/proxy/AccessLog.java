@@ -0,0 +1,312 @@
+package org.reactome.server.utils.proxy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.ServletConfig;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Non-blocking access log for the proxied requests.
+ * <p>
+ * Request threads claim a slot of a preallocated ring buffer with a compare-and-set,
+ * fill it and publish it; they never wait: when the buffer is full the record is
+ * dropped (and counted). A background thread drains the published records in batches
+ * to a file that is rolled when it reaches its maximum size (file, file.1, file.2 ...).
+ * <p>
+ * Every line contains: time, method, requested URL, upstream, status, response bytes,
+ * total time and upstream time (both in microseconds, - when not applicable).
+ * <p>
+ * Configured with the following (optional) init-params of the servlets, which share
+ * the log when they point to the same file:
+ * accessLogFile, accessLogBufferSize (8192), accessLogSampleRate (1.0),
+ * accessLogMaxFileSize (104857600) and accessLogMaxFiles (10).
+ * <p>
+ * Write failures (e.g. a full disk) are logged and the file is reopened after a short
+ * pause, so the writer keeps going once the problem is solved.
+ */
+class AccessLog {
+
+    private static final Logger log = LoggerFactory.getLogger("AccessLog");
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    private static final long DEFAULT_MAX_FILE_SIZE = 100 * 1024 * 1024;
+    private static final int DEFAULT_MAX_FILES = 10;
+    private static final long IDLE_WAIT = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long ERROR_WAIT = TimeUnit.SECONDS.toNanos(1);
+
+    private static final Map<String, AccessLog> LOGS = new HashMap<>();
+
+    private final Path file;
+    private final double sampleRate;
+    private final long maxFileSize;
+    private final int maxFiles;
+
+    private final Record[] records;
+    private final AtomicLongArray published;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final Thread writer;
+    private volatile boolean active = true;
+    private int references = 0;
+    // Only used by the writer thread
+    private long size = 0;
+
+    private AccessLog(Path file, int bufferSize, double sampleRate, long maxFileSize, int maxFiles) {
+        this.file = file;
+        this.sampleRate = sampleRate;
+        this.maxFileSize = maxFileSize;
+        this.maxFiles = maxFiles;
+
+        int capacity = Integer.highestOneBit(Math.max(2, bufferSize - 1)) << 1;
+        this.records = new Record[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            this.records[i] = new Record();
+            this.published.set(i, -1L);
+        }
+        this.mask = capacity - 1;
+
+        this.writer = new Thread(this::drain, "access-log-writer-" + file.getFileName());
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Opens (or shares) the access log configured in the init-params of a servlet
+     *
+     * @param servletConfig the servlet configuration
+     * @return the access log or null if no accessLogFile has been configured
+     */
+    static AccessLog open(ServletConfig servletConfig) {
+        String file = servletConfig.getInitParameter("accessLogFile");
+        if (file == null || file.isEmpty()) return null;
+        String bufferSize = servletConfig.getInitParameter("accessLogBufferSize");
+        String sampleRate = servletConfig.getInitParameter("accessLogSampleRate");
+        String maxFileSize = servletConfig.getInitParameter("accessLogMaxFileSize");
+        String maxFiles = servletConfig.getInitParameter("accessLogMaxFiles");
+        return open(file,
+                bufferSize == null || bufferSize.isEmpty() ? DEFAULT_BUFFER_SIZE : Integer.parseInt(bufferSize),
+                sampleRate == null || sampleRate.isEmpty() ? 1.0 : Double.parseDouble(sampleRate),
+                maxFileSize == null || maxFileSize.isEmpty() ? DEFAULT_MAX_FILE_SIZE : Long.parseLong(maxFileSize),
+                maxFiles == null || maxFiles.isEmpty() ? DEFAULT_MAX_FILES : Integer.parseInt(maxFiles));
+    }
+
+    static synchronized AccessLog open(String file, int bufferSize, double sampleRate, long maxFileSize, int maxFiles) {
+        Path path = Paths.get(file).toAbsolutePath().normalize();
+        AccessLog log = LOGS.get(path.toString());
+        if (log == null) {
+            log = new AccessLog(path, bufferSize, sampleRate, maxFileSize, maxFiles);
+            LOGS.put(path.toString(), log);
+        }
+        log.references++;
+        return log;
+    }
+
+    /**
+     * Releases this log. The last servlet closing it flushes the pending records and stops the writer.
+     */
+    void close() {
+        synchronized (AccessLog.class) {
+            if (--this.references > 0) return;
+            LOGS.remove(this.file.toString());
+        }
+        this.active = false;
+        LockSupport.unpark(this.writer);
+        try {
+            this.writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Records a request. Never blocks: the record is dropped if it is not sampled or if the buffer is full.
+     *
+     * @param startNanos    {@link System#nanoTime()} when the request started
+     * @param upstreamNanos time spent waiting for the upstream, negative if it was not contacted
+     */
+    void log(String method, String uri, String query, String upstream, int status, long bytes, long startNanos, long upstreamNanos) {
+        if (this.sampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= this.sampleRate) return;
+        long duration = System.nanoTime() - startNanos;
+        long sequence;
+        long pending;
+        do {
+            sequence = this.tail.get();
+            pending = sequence - this.head.get();
+            if (pending >= this.records.length) {
+                this.dropped.incrementAndGet();
+                return;
+            }
+        } while (!this.tail.compareAndSet(sequence, sequence + 1));
+
+        int index = (int) (sequence & this.mask);
+        Record record = this.records[index];
+        record.time = System.currentTimeMillis();
+        record.method = method;
+        record.uri = uri;
+        record.query = query;
+        record.upstream = upstream;
+        record.status = status;
+        record.bytes = bytes;
+        record.duration = duration;
+        record.upstreamDuration = upstreamNanos;
+        this.published.lazySet(index, sequence);
+        // Only the request filling half of the buffer wakes the writer up, the rest never pay for it
+        if (pending == this.records.length >> 1) LockSupport.unpark(this.writer);
+    }
+
+    long getDropped() {
+        return this.dropped.get();
+    }
+
+    //**************************/
+    //***   Writer thread    ***/
+    //**************************/
+    private void drain() {
+        StringBuilder line = new StringBuilder(256);
+        long reportedDropped = 0;
+        Writer out = null;
+        try {
+            while (true) {
+                boolean stopping = !this.active;
+                int batch = 0;
+                try {
+                    long sequence = this.head.get();
+                    while (this.published.get((int) (sequence & this.mask)) == sequence) {
+                        Record record = this.records[(int) (sequence & this.mask)];
+                        line.setLength(0);
+                        record.format(line);
+                        // Releases the slot (and the references it holds) before moving the head forward
+                        record.clear();
+                        this.head.lazySet(++sequence);
+
+                        if (out == null) out = openFile();
+                        out.write(line.toString());
+                        this.size += line.length();
+                        batch++;
+                        if (this.size >= this.maxFileSize) {
+                            out.close();
+                            out = null;
+                            rollFiles();
+                        }
+                    }
+                    long currentDropped = this.dropped.get();
+                    if (currentDropped != reportedDropped) {
+                        if (out == null) out = openFile();
+                        line.setLength(0);
+                        line.append("# ").append(currentDropped - reportedDropped).append(" records dropped\n");
+                        out.write(line.toString());
+                        this.size += line.length();
+                        reportedDropped = currentDropped;
+                        batch++;
+                    }
+                    if (batch > 0 && out != null) out.flush();
+                } catch (IOException e) {
+                    // The records being written are lost, the following ones wait in the buffer (or are dropped)
+                    log.error("Access log " + this.file + " could not be written, retrying: " + e.getMessage());
+                    closeQuietly(out);
+                    out = null;
+                    if (stopping) break;
+                    LockSupport.parkNanos(this, ERROR_WAIT);
+                    continue;
+                }
+                if (stopping) break;
+                if (batch == 0) LockSupport.parkNanos(this, IDLE_WAIT);
+            }
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    /**
+     * Opens the file for appending and sets the current size from it
+     */
+    private Writer openFile() throws IOException {
+        Path parent = this.file.getParent();
+        if (parent != null) Files.createDirectories(parent);
+        this.size = Files.exists(this.file) ? Files.size(this.file) : 0;
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(this.file.toFile(), true), UTF_8), 64 * 1024);
+    }
+
+    private void closeQuietly(Writer out) {
+        if (out == null) return;
+        try {
+            out.close();
+        } catch (IOException e) {
+            log.warn("Access log " + this.file + " could not be closed: " + e.getMessage());
+        }
+    }
+
+    private void rollFiles() throws IOException {
+        Files.deleteIfExists(Paths.get(this.file + "." + (this.maxFiles - 1)));
+        for (int i = this.maxFiles - 2; i >= 1; i--) {
+            Path source = Paths.get(this.file + "." + i);
+            if (Files.exists(source)) {
+                Files.move(source, Paths.get(this.file + "." + (i + 1)), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        if (this.maxFiles > 1) {
+            Files.move(this.file, Paths.get(this.file + ".1"), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.delete(this.file);
+        }
+    }
+
+    //*******************************/
+    //***   Ring buffer record    ***/
+    //*******************************/
+    private static class Record {
+        private long time;
+        private String method;
+        private String uri;
+        private String query;
+        private String upstream;
+        private int status;
+        private long bytes;
+        private long duration;
+        private long upstreamDuration;
+
+        private void format(StringBuilder line) {
+            line.append(Instant.ofEpochMilli(this.time)).append(' ')
+                    .append(this.method).append(' ')
+                    .append(this.uri);
+            if (this.query != null) line.append('?').append(this.query);
+            line.append(' ').append(this.upstream == null ? "-" : this.upstream)
+                    .append(' ').append(this.status)
+                    .append(' ').append(this.bytes)
+                    .append(' ').append(TimeUnit.NANOSECONDS.toMicros(this.duration))
+                    .append(' ');
+            if (this.upstreamDuration < 0) {
+                line.append('-');
+            } else {
+                line.append(TimeUnit.NANOSECONDS.toMicros(this.upstreamDuration));
+            }
+            line.append('\n');
+        }
+
+        private void clear() {
+            this.method = null;
+            this.uri = null;
+            this.query = null;
+            this.upstream = null;
+        }
+    }
+}
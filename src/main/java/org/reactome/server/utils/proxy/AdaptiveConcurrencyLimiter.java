@@ -0,0 +1,146 @@
+package org.reactome.server.utils.proxy;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the number of concurrent requests sent to an upstream, adapting the limit
+ * to the observed round-trip times (AIMD, gradient style):
+ * <ul>
+ * <li>while the smoothed RTT stays close to its minimum (the upstream is not queueing)
+ * and the limit is being used, the limit grows by one per request</li>
+ * <li>when the smoothed RTT exceeds its minimum times the tolerance, or the upstream
+ * fails, the limit is multiplied by the backoff ratio, at most once per RTT</li>
+ * </ul>
+ * The RTT is an exponentially smoothed average over about {@link #SMOOTHING_WINDOW}
+ * samples, so single slow responses (e.g. from a slower endpoint of the same upstream) do
+ * not count as congestion and a steady mix of endpoints is simply part of the baseline.
+ * The minimum is re-evaluated every {@link #RTT_WINDOW} (a duration, so the baseline does
+ * not catch up with a queue building up under high throughput), so it follows lasting
+ * changes of the upstream. Everything relies on atomic counters, so the request
+ * threads never block on the limiter.
+ */
+class AdaptiveConcurrencyLimiter {
+
+    private static final int SMOOTHING_WINDOW = 32;
+    private static final long RTT_WINDOW = TimeUnit.SECONDS.toNanos(10);
+    private static final double BACKOFF_RATIO = 0.9;
+    /**
+     * Minimum time between two consecutive backoffs, and the one used before any RTT has been observed
+     */
+    private static final long MIN_BACKOFF_INTERVAL = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long DEFAULT_BACKOFF_INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+
+    private final AtomicInteger limit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong smoothedRtt = new AtomicLong();
+    private final AtomicLong minRtt = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong windowMinRtt = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong samples = new AtomicLong();
+    private final AtomicLong nextWindow = new AtomicLong(System.nanoTime() + RTT_WINDOW);
+    private final AtomicLong nextBackoff = new AtomicLong(System.nanoTime());
+
+    /**
+     * @param minLimit     the limit never goes below this value
+     * @param initialLimit the limit when no RTT has been observed yet
+     * @param maxLimit     the limit never goes above this value
+     * @param tolerance    ratio of the minimum smoothed RTT above which the upstream is considered congested (e.g. 2.0)
+     */
+    AdaptiveConcurrencyLimiter(int minLimit, int initialLimit, int maxLimit, double tolerance) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.limit = new AtomicInteger(Math.max(minLimit, Math.min(initialLimit, maxLimit)));
+    }
+
+    /**
+     * @return true if the request can be sent, in which case exactly one of {@link #onSuccess(long)},
+     * {@link #onDropped()} or {@link #release()} has to be called once it completes
+     */
+    boolean tryAcquire() {
+        while (true) {
+            int current = this.inFlight.get();
+            if (current >= this.limit.get()) return false;
+            if (this.inFlight.compareAndSet(current, current + 1)) return true;
+        }
+    }
+
+    /**
+     * The upstream answered the request
+     *
+     * @param rttNanos time spent waiting for the upstream
+     */
+    void onSuccess(long rttNanos) {
+        int current = this.inFlight.getAndDecrement();
+        long rtt = this.smoothedRtt.updateAndGet(a -> a == 0 ? rttNanos : a + (rttNanos - a) / SMOOTHING_WINDOW);
+        // The average is not meaningful (nor a baseline) until it has seen a full smoothing window
+        if (this.samples.incrementAndGet() > SMOOTHING_WINDOW) updateMinRtt(rtt);
+        if (rtt > this.minRtt.get() * this.tolerance) {
+            decrease();
+        } else if (current * 2 >= this.limit.get()) {
+            // Only grows when at least half of the limit is used, otherwise it is not the bottleneck
+            this.limit.updateAndGet(l -> Math.min(this.maxLimit, l + 1));
+        }
+    }
+
+    /**
+     * The upstream failed or timed out
+     */
+    void onDropped() {
+        this.inFlight.decrementAndGet();
+        decrease();
+    }
+
+    /**
+     * The request completed without a meaningful upstream RTT (e.g. it was not sent)
+     */
+    void release() {
+        this.inFlight.decrementAndGet();
+    }
+
+    int getLimit() {
+        return this.limit.get();
+    }
+
+    int getInFlight() {
+        return this.inFlight.get();
+    }
+
+    int getMaxLimit() {
+        return this.maxLimit;
+    }
+
+    double getTolerance() {
+        return this.tolerance;
+    }
+
+    /**
+     * Multiplies the limit by the backoff ratio unless it has already been done within the last RTT,
+     * so a burst of slow responses or failures caused by the same congestion only counts once
+     */
+    private void decrease() {
+        long now = System.nanoTime();
+        long next = this.nextBackoff.get();
+        if (now - next < 0) return;
+        long rtt = this.smoothedRtt.get();
+        long interval = rtt == 0 ? DEFAULT_BACKOFF_INTERVAL : Math.max(MIN_BACKOFF_INTERVAL, rtt);
+        if (!this.nextBackoff.compareAndSet(next, now + interval)) return;
+        this.limit.updateAndGet(l -> Math.max(this.minLimit, (int) (l * BACKOFF_RATIO)));
+    }
+
+    private void updateMinRtt(long rttNanos) {
+        this.windowMinRtt.accumulateAndGet(rttNanos, Math::min);
+        this.minRtt.accumulateAndGet(rttNanos, Math::min);
+        long now = System.nanoTime();
+        long next = this.nextWindow.get();
+        if (now - next >= 0 && this.nextWindow.compareAndSet(next, now + RTT_WINDOW)) {
+            // The new baseline is the minimum of the last window, so it can also go up
+            this.minRtt.set(this.windowMinRtt.getAndSet(Long.MAX_VALUE));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.reactome.server.utils.proxy;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket per client, implemented as a generic cell rate algorithm: every client
+ * keeps the theoretical arrival time of its next request in an atomic counter, which
+ * is moved forward with a single compare-and-set per allowed request.
+ */
+class ClientRateLimiter {
+
+    private static final int CLEANUP_THRESHOLD = 10_000;
+
+    private final long interval;
+    private final long burstOffset;
+    private final Map<String, AtomicLong> clients = new ConcurrentHashMap<>();
+    private final AtomicLong calls = new AtomicLong();
+
+    /**
+     * @param rate  sustained number of requests per second allowed per client
+     * @param burst number of requests a client can send at once
+     */
+    ClientRateLimiter(double rate, int burst) {
+        this.interval = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        this.burstOffset = this.interval * Math.max(1, burst);
+    }
+
+    /**
+     * @param client the client identifier (e.g. its IP address)
+     * @return 0 if the request is allowed, otherwise the time (in nanoseconds) until the client can send it
+     */
+    long tryAcquire(String client) {
+        long now = System.nanoTime();
+        if ((this.calls.incrementAndGet() & 0x3FF) == 0 && this.clients.size() > CLEANUP_THRESHOLD) {
+            cleanUp(now);
+        }
+        AtomicLong tat = this.clients.computeIfAbsent(client, c -> new AtomicLong(now));
+        while (true) {
+            long current = tat.get();
+            long next = Math.max(current, now) + this.interval;
+            long excess = next - now - this.burstOffset;
+            if (excess > 0) return excess;
+            if (tat.compareAndSet(current, next)) return 0;
+        }
+    }
+
+    /**
+     * Forgets the clients whose bucket is full again, so the map does not grow with every client ever seen
+     */
+    private void cleanUp(long now) {
+        this.clients.values().removeIf(tat -> tat.get() - now <= 0);
+    }
+}
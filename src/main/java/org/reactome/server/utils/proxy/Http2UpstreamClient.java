@@ -0,0 +1,182 @@
+package org.reactome.server.utils.proxy;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.ConnectionClosedException;
+import org.apache.hc.core5.http.ProtocolException;
+import org.apache.hc.core5.http2.H2ConnectionException;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.util.Timeout;
+import org.apache.http.*;
+import org.apache.http.client.methods.Configurable;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Multiplexes the proxied requests over a few HTTP/2 upstream connections.
+ * <p>
+ * Over TLS the protocol is negotiated with ALPN, so upstreams that do not support h2 are
+ * transparently served over HTTP/1.1. Over cleartext h2c is used with prior knowledge.
+ * <p>
+ * Requests and responses are translated from/to the HttpClient 4.x classes used by the
+ * {@link ProxyServlet}, and the responses are decoded as the HttpClient 4.x default
+ * client does (gzip content is ungzipped and its encoding and length headers removed),
+ * so the proxy handles them exactly as the HTTP/1.1 ones.
+ */
+class Http2UpstreamClient {
+
+    /**
+     * Connection-specific headers are not allowed in HTTP/2 (RFC 7540, 8.1.2.2). The Host is sent as :authority
+     * and the Content-Length and Content-Type are set from the request body.
+     */
+    private static final Set<String> EXCLUDED_REQUEST_HEADERS = new HashSet<>(Arrays.asList(
+            "connection", "keep-alive", "proxy-connection", "transfer-encoding", "upgrade", "te", "host",
+            "content-length", "content-type", "expect"));
+
+    private final CloseableHttpAsyncClient client;
+
+    /**
+     * @param secure         true to negotiate the protocol over TLS, false for h2c with prior knowledge
+     * @param maxConnections size of the pool. Few connections are used over HTTP/2, but an upstream only
+     *                       negotiating HTTP/1.1 needs one per concurrent request, as the classic client
+     */
+    Http2UpstreamClient(boolean secure, int maxConnections) {
+        this.client = HttpAsyncClients.custom()
+                .setVersionPolicy(secure ? HttpVersionPolicy.NEGOTIATE : HttpVersionPolicy.FORCE_HTTP_2)
+                .setConnectionManager(PoolingAsyncClientConnectionManagerBuilder.create()
+                        .setMaxConnTotal(maxConnections)
+                        .setMaxConnPerRoute(maxConnections)
+                        .build())
+                .disableRedirectHandling()
+                .build();
+        this.client.start();
+    }
+
+    /**
+     * Executes the request and buffers its response. The timeouts of the request {@link org.apache.http.client.config.RequestConfig}
+     * are applied, and the exchange is cancelled if the calling thread is interrupted while waiting for it.
+     *
+     * @param request the request built by the proxy
+     * @return the upstream response as an HttpClient 4.x response
+     * @throws IOException if the request cannot be executed
+     */
+    HttpResponse execute(HttpUriRequest request) throws IOException {
+        SimpleHttpRequest upstreamRequest = new SimpleHttpRequest(request.getMethod(), request.getURI());
+        for (Header header : request.getAllHeaders()) {
+            if (!EXCLUDED_REQUEST_HEADERS.contains(header.getName().toLowerCase(Locale.ROOT))) {
+                upstreamRequest.addHeader(header.getName(), header.getValue());
+            }
+        }
+        if (request instanceof HttpEntityEnclosingRequest) {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            if (entity != null) {
+                Header contentType = entity.getContentType();
+                if (contentType == null) contentType = request.getFirstHeader("Content-Type");
+                upstreamRequest.setBody(EntityUtils.toByteArray(entity), contentType == null ? null :
+                        org.apache.hc.core5.http.ContentType.parse(contentType.getValue()));
+            }
+        }
+        if (request instanceof Configurable && ((Configurable) request).getConfig() != null) {
+            upstreamRequest.setConfig(toRequestConfig(((Configurable) request).getConfig()));
+        }
+
+        Future<SimpleHttpResponse> future = this.client.execute(upstreamRequest, null);
+        SimpleHttpResponse upstreamResponse;
+        try {
+            upstreamResponse = future.get();
+        } catch (InterruptedException e) {
+            // Otherwise the exchange would go on, buffering the whole response for nobody
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + request.getURI());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+        return toHttpResponse(upstreamResponse);
+    }
+
+    void close() {
+        this.client.close(CloseMode.GRACEFUL);
+    }
+
+    /**
+     * Tells whether a failed exchange means the upstream does not speak HTTP/2, e.g. it rejected the
+     * connection preface or closed the connection once established, as opposed to the upstream being
+     * unreachable or slow (connection refused, timeouts...), which says nothing about the protocol
+     *
+     * @param e the exception thrown by {@link #execute(HttpUriRequest)}
+     * @return true if the failure comes from the HTTP/2 protocol negotiation
+     */
+    static boolean isProtocolFailure(IOException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof InterruptedIOException     // includes the socket timeouts
+                    || cause instanceof ConnectException
+                    || cause instanceof NoRouteToHostException
+                    || cause instanceof UnknownHostException) {
+                return false;
+            }
+            if (cause instanceof H2ConnectionException
+                    || cause instanceof ProtocolException
+                    || cause instanceof ConnectionClosedException
+                    || cause instanceof SocketException) {  // e.g. connection reset after connecting
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Translates the timeouts of a HttpClient 4.x request configuration (0 or less means not set)
+     */
+    @SuppressWarnings("deprecation")
+    private static RequestConfig toRequestConfig(org.apache.http.client.config.RequestConfig config) {
+        RequestConfig.Builder builder = RequestConfig.custom();
+        if (config.getConnectTimeout() > 0) builder.setConnectTimeout(Timeout.ofMilliseconds(config.getConnectTimeout()));
+        if (config.getSocketTimeout() > 0) builder.setResponseTimeout(Timeout.ofMilliseconds(config.getSocketTimeout()));
+        if (config.getConnectionRequestTimeout() > 0) {
+            builder.setConnectionRequestTimeout(Timeout.ofMilliseconds(config.getConnectionRequestTimeout()));
+        }
+        return builder.build();
+    }
+
+    private static HttpResponse toHttpResponse(SimpleHttpResponse upstreamResponse) throws IOException {
+        byte[] body = upstreamResponse.getBodyBytes();
+        if (body == null) body = new byte[0];
+
+        org.apache.hc.core5.http.Header encoding = upstreamResponse.getFirstHeader("Content-Encoding");
+        boolean gzipped = encoding != null && encoding.getValue().toLowerCase(Locale.ROOT).contains("gzip");
+        if (gzipped && body.length > 0) {
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                body = IOUtils.toByteArray(in);
+            }
+        }
+
+        BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, upstreamResponse.getCode(), upstreamResponse.getReasonPhrase());
+        for (org.apache.hc.core5.http.Header header : upstreamResponse.getHeaders()) {
+            if (gzipped && (header.getName().equalsIgnoreCase("Content-Encoding") || header.getName().equalsIgnoreCase("Content-Length"))) {
+                continue;
+            }
+            response.addHeader(header.getName(), header.getValue());
+        }
+        response.setEntity(new ByteArrayEntity(body));
+        return response;
+    }
+}
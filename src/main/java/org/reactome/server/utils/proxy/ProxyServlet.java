@@ -7,33 +7,44 @@ import org.apache.commons.fileupload.servlet.ServletFileUpload;
 import org.apache.commons.io.IOUtils;
 
 import org.apache.http.*;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
 import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
+import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.message.BasicHeader;
 import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
 
 import javax.net.ssl.KeyManager;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.*;
+import java.net.URLDecoder;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.cert.X509Certificate;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.GZIPInputStream;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -77,6 +88,47 @@ public class ProxyServlet extends HttpServlet {
      * Key for host header
      */
     private static final String STRING_HOST_HEADER_NAME = "Host";
+    /**
+     * Key for the header asking for the server approval before sending the request body
+     */
+    private static final String STRING_EXPECT_HEADER_NAME = "Expect";
+    /**
+     * Keys for the headers describing the framing and the encoding of the request body
+     */
+    private static final String STRING_TRANSFER_ENCODING_HEADER_NAME = "Transfer-Encoding";
+    private static final String STRING_CONTENT_ENCODING_HEADER_NAME = "Content-Encoding";
+    /**
+     * Key for the header telling rejected clients when to retry
+     */
+    private static final String STRING_RETRY_AFTER_HEADER_NAME = "Retry-After";
+    /**
+     * Status code for the clients exceeding their rate limit (not defined in {@link HttpServletResponse})
+     */
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+    /**
+     * The maximum number of sub-requests accepted in a batch
+     */
+    private static final int MAX_BATCH_ITEMS = 100;
+    private static final int MAX_BATCH_LINE_LENGTH = 8192;
+    /**
+     * Maximum time (in milliseconds) waiting for a pooled upstream connection before answering 503
+     */
+    private static final int CONNECTION_REQUEST_TIMEOUT = 5000;
+    private static final RequestConfig DEFAULT_REQUEST_CONFIG = RequestConfig.custom()
+            .setConnectionRequestTimeout(CONNECTION_REQUEST_TIMEOUT)
+            .build();
+    /**
+     * Request attributes set by {@link #executeProxyRequest} describing the upstream exchange
+     */
+    protected static final String ATTRIBUTE_UPSTREAM_TIME = ProxyServlet.class.getName() + ".upstreamTime";
+    protected static final String ATTRIBUTE_UPSTREAM_STATUS = ProxyServlet.class.getName() + ".upstreamStatus";
+    protected static final String ATTRIBUTE_UPSTREAM_FAILED = ProxyServlet.class.getName() + ".upstreamFailed";
+    protected static final String ATTRIBUTE_UPSTREAM_URL = ProxyServlet.class.getName() + ".upstreamUrl";
+    protected static final String ATTRIBUTE_RESPONSE_BYTES = ProxyServlet.class.getName() + ".responseBytes";
+    /**
+     * Adaptive concurrency limiters shared by all the servlets proxying to the same upstream
+     */
+    private static final Map<String, AdaptiveConcurrencyLimiter> CONCURRENCY_LIMITERS = new ConcurrentHashMap<>();
     /**
      * The directory to use to temporarily store uploaded files
      */
@@ -106,8 +158,69 @@ public class ProxyServlet extends HttpServlet {
      * The maximum size for uploaded files in bytes. Default value is 5MB.
      */
     private int intMaxFileUploadSize = 5 * 1024 * 1024;
+    /**
+     * Whether the POST requests over the maxFileUploadSize are rejected, only when it has been explicitly set
+     */
+    private boolean rejectOversizedPosts;
     private boolean isSecure;
     private boolean followRedirects;
+    /**
+     * Whether the upstream requests are sent over HTTP/2 (h2 negotiated over TLS, h2c over cleartext)
+     */
+    private boolean http2;
+    private volatile Http2UpstreamClient http2Client;
+    /**
+     * Set when a cleartext upstream turns out not to speak h2c, so HTTP/1.1 is used from then on
+     */
+    private volatile boolean http2Unsupported;
+    private volatile boolean http2Confirmed;
+    /**
+     * Whether the concurrent requests to the upstream are limited, adapting the limit to its response times
+     */
+    private boolean adaptiveConcurrency;
+    /**
+     * The maximum number of concurrent requests to the upstream when adaptiveConcurrency is enabled. Default value is 200.
+     */
+    private int intMaxConcurrency = 200;
+    /**
+     * Ratio of the minimum upstream response time above which the upstream is considered congested. Default value is 2.
+     */
+    private double rttTolerance = 2.0;
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+    /**
+     * The (optional) number of requests per second allowed per client IP. Default value is 0 (no limit).
+     */
+    private double clientRateLimit;
+    /**
+     * The number of requests a client IP can send at once. Default value is the clientRateLimit.
+     */
+    private int intClientRateBurst;
+    private ClientRateLimiter clientRateLimiter;
+    /**
+     * Executor running every request in its own virtual thread (Java 21+), null when disabled
+     */
+    private ExecutorService virtualThreadExecutor;
+    /**
+     * HttpClient (with its pool of upstream connections) shared by all the HTTP/1.1 requests
+     */
+    private volatile CloseableHttpClient httpClient;
+    /**
+     * The (optional) path, relative to the servlet mapping, receiving the batches of GET requests. Default value is null (disabled).
+     */
+    private String stringBatchPath;
+    /**
+     * The maximum number of sub-requests of a batch sent concurrently to the upstream. Default value is 8.
+     */
+    private int intBatchParallelism = 8;
+    /**
+     * The maximum time (in milliseconds) for every sub-request of a batch. Default value is 10 seconds.
+     */
+    private int intBatchTimeout = 10_000;
+    private volatile ExecutorService batchExecutor;
+    /**
+     * The (optional) access log, enabled with the init-param 'accessLogFile'
+     */
+    private AccessLog accessLog;
 
     /**
      * Initialize the <code>ProxyServlet</code>
@@ -148,6 +261,254 @@ public class ProxyServlet extends HttpServlet {
         if (stringMaxFileUploadSize != null && stringMaxFileUploadSize.length() > 0) {
             this.setMaxFileUploadSize(Integer.parseInt(stringMaxFileUploadSize));
         }
+
+        // Use HTTP/2 for the upstream requests if specified
+        String stringHttp2 = servletConfig.getInitParameter("http2");
+        if (stringHttp2 != null && stringHttp2.length() > 0) {
+            this.setHttp2(Boolean.parseBoolean(stringHttp2));
+        }
+
+        // Get the load shedding settings if specified
+        String stringAdaptiveConcurrency = servletConfig.getInitParameter("adaptiveConcurrency");
+        if (stringAdaptiveConcurrency != null && stringAdaptiveConcurrency.length() > 0) {
+            this.setAdaptiveConcurrency(Boolean.parseBoolean(stringAdaptiveConcurrency));
+        }
+        String stringMaxConcurrency = servletConfig.getInitParameter("maxConcurrency");
+        if (stringMaxConcurrency != null && stringMaxConcurrency.length() > 0) {
+            this.setMaxConcurrency(Integer.parseInt(stringMaxConcurrency));
+        }
+        String stringRttTolerance = servletConfig.getInitParameter("rttTolerance");
+        if (stringRttTolerance != null && stringRttTolerance.length() > 0) {
+            this.setRttTolerance(Double.parseDouble(stringRttTolerance));
+        }
+        String stringClientRateLimit = servletConfig.getInitParameter("clientRateLimit");
+        if (stringClientRateLimit != null && stringClientRateLimit.length() > 0) {
+            this.setClientRateLimit(Double.parseDouble(stringClientRateLimit));
+        }
+        String stringClientRateBurst = servletConfig.getInitParameter("clientRateBurst");
+        if (stringClientRateBurst != null && stringClientRateBurst.length() > 0) {
+            this.setClientRateBurst(Integer.parseInt(stringClientRateBurst));
+        }
+        this.initLoadShedding();
+
+        // Run the requests in virtual threads if specified
+        String stringVirtualThreads = servletConfig.getInitParameter("virtualThreads");
+        if (stringVirtualThreads != null && stringVirtualThreads.length() > 0) {
+            this.setVirtualThreads(Boolean.parseBoolean(stringVirtualThreads));
+        }
+
+        // Get the batch settings if specified
+        String stringBatchPath = servletConfig.getInitParameter("batchPath");
+        if (stringBatchPath != null && stringBatchPath.length() > 0) {
+            this.setBatchPath(stringBatchPath);
+        }
+        String stringBatchParallelism = servletConfig.getInitParameter("batchParallelism");
+        if (stringBatchParallelism != null && stringBatchParallelism.length() > 0) {
+            this.setBatchParallelism(Integer.parseInt(stringBatchParallelism));
+        }
+        String stringBatchTimeout = servletConfig.getInitParameter("batchTimeout");
+        if (stringBatchTimeout != null && stringBatchTimeout.length() > 0) {
+            this.setBatchTimeout(Integer.parseInt(stringBatchTimeout));
+        }
+
+        // Get the access log if specified
+        this.accessLog = AccessLog.open(servletConfig);
+    }
+
+    /**
+     * Creates the concurrency and rate limiters according to the current settings
+     */
+    protected void initLoadShedding() {
+        this.concurrencyLimiter = null;
+        if (adaptiveConcurrency) {
+            String upstream = (isSecure ? "https://" : "http://") + getProxyHostAndPort();
+            int max = getMaxConcurrency();
+            this.concurrencyLimiter = CONCURRENCY_LIMITERS.computeIfAbsent(upstream,
+                    u -> new AdaptiveConcurrencyLimiter(1, Math.min(20, max), max, rttTolerance));
+            if (this.concurrencyLimiter.getMaxLimit() != max || this.concurrencyLimiter.getTolerance() != rttTolerance) {
+                log("The concurrency limiter for " + upstream + " is shared with another servlet, so its maxConcurrency ("
+                        + this.concurrencyLimiter.getMaxLimit() + ") and rttTolerance (" + this.concurrencyLimiter.getTolerance()
+                        + ") are used instead of " + max + " and " + rttTolerance);
+            }
+        }
+        this.clientRateLimiter = null;
+        if (clientRateLimit > 0) {
+            int burst = intClientRateBurst > 0 ? intClientRateBurst : (int) Math.ceil(clientRateLimit);
+            this.clientRateLimiter = new ClientRateLimiter(clientRateLimit, burst);
+        }
+    }
+
+    /**
+     * Rejects the requests exceeding the client rate limit (429) or the upstream concurrency limit (503)
+     * before doing any work for them, and feeds the concurrency limiter with the upstream response times.
+     * When virtual threads are enabled (and the request supports async processing) the request is proxied
+     * in a new virtual thread. Every request is recorded in the access log (if any) once it has been served.
+     *
+     * @param httpServletRequest  The {@link HttpServletRequest} object passed in by the servlet engine
+     * @param httpServletResponse The {@link HttpServletResponse} object by which we can send the response
+     */
+    protected void service(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        // The sub-requests of a batch are limited one by one, so the batch itself is not
+        boolean batch = isBatchRequest(httpServletRequest);
+        ClientRateLimiter rateLimiter = batch ? null : this.clientRateLimiter;
+        if (rateLimiter != null) {
+            long wait = rateLimiter.tryAcquire(httpServletRequest.getRemoteAddr());
+            if (wait > 0) {
+                reject(httpServletResponse, SC_TOO_MANY_REQUESTS, wait);
+                logAccess(httpServletRequest, httpServletResponse, start);
+                return;
+            }
+        }
+
+        AdaptiveConcurrencyLimiter limiter = batch ? null : this.concurrencyLimiter;
+        if (limiter != null && !limiter.tryAcquire()) {
+            reject(httpServletResponse, HttpServletResponse.SC_SERVICE_UNAVAILABLE, TimeUnit.SECONDS.toNanos(1));
+            logAccess(httpServletRequest, httpServletResponse, start);
+            return;
+        }
+
+        ExecutorService executor = this.virtualThreadExecutor;
+        if (executor == null || !httpServletRequest.isAsyncSupported()) {
+            try {
+                proxy(httpServletRequest, httpServletResponse, limiter);
+            } catch (ServletException | IOException | RuntimeException e) {
+                // The container only turns the exception into an error response once it is rethrown
+                logAccess(httpServletRequest, httpServletResponse, start, getErrorStatus(httpServletRequest, httpServletResponse));
+                throw e;
+            }
+            logAccess(httpServletRequest, httpServletResponse, start);
+            return;
+        }
+        // The container thread is released straight away and the blocking proxy logic runs in a virtual thread
+        AsyncContext asyncContext = httpServletRequest.startAsync();
+        asyncContext.setTimeout(0);
+        Runnable task = () -> {
+            try {
+                proxy(httpServletRequest, httpServletResponse, limiter);
+            } catch (ServletException | IOException | RuntimeException e) {
+                log("Error proxying " + httpServletRequest.getRequestURL(), e);
+                if (!httpServletResponse.isCommitted()) {
+                    try {
+                        httpServletResponse.sendError(getErrorStatus(httpServletRequest, httpServletResponse));
+                    } catch (IOException ignored) {
+                        // the client is gone
+                    }
+                }
+            } finally {
+                logAccess(httpServletRequest, httpServletResponse, start);
+                asyncContext.complete();
+            }
+        };
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // The servlet is being destroyed
+            task.run();
+        }
+    }
+
+    /**
+     * Dispatches the request to the doXXX methods, feeding the concurrency limiter (if any) with the upstream response time
+     */
+    private void proxy(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse, AdaptiveConcurrencyLimiter limiter)
+            throws ServletException, IOException {
+        if (limiter == null) {
+            super.service(httpServletRequest, httpServletResponse);
+            return;
+        }
+        try {
+            super.service(httpServletRequest, httpServletResponse);
+        } finally {
+            Long upstreamTime = (Long) httpServletRequest.getAttribute(ATTRIBUTE_UPSTREAM_TIME);
+            Integer upstreamStatus = (Integer) httpServletRequest.getAttribute(ATTRIBUTE_UPSTREAM_STATUS);
+            if (httpServletRequest.getAttribute(ATTRIBUTE_UPSTREAM_FAILED) != null || isOverloadStatus(upstreamStatus)) {
+                limiter.onDropped();
+            } else if (upstreamTime != null) {
+                limiter.onSuccess(upstreamTime);
+            } else {
+                limiter.release();
+            }
+        }
+    }
+
+    /**
+     * Records the request in the access log (if any). It never blocks the calling thread.
+     *
+     * @param start {@link System#nanoTime()} when the request was received
+     */
+    private void logAccess(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse, long start) {
+        logAccess(httpServletRequest, httpServletResponse, start, httpServletResponse.getStatus());
+    }
+
+    /**
+     * @param status the status to log, when it is not yet the one of the response
+     */
+    private void logAccess(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse, long start, int status) {
+        AccessLog accessLog = this.accessLog;
+        if (accessLog == null) return;
+        Long upstreamTime = (Long) httpServletRequest.getAttribute(ATTRIBUTE_UPSTREAM_TIME);
+        Long responseBytes = (Long) httpServletRequest.getAttribute(ATTRIBUTE_RESPONSE_BYTES);
+        accessLog.log(httpServletRequest.getMethod(),
+                httpServletRequest.getRequestURI(),
+                httpServletRequest.getQueryString(),
+                (String) httpServletRequest.getAttribute(ATTRIBUTE_UPSTREAM_URL),
+                status,
+                responseBytes == null ? 0 : responseBytes,
+                start,
+                upstreamTime == null ? -1 : upstreamTime);
+    }
+
+    /**
+     * @return the status of a request that failed with an exception: 502 when the upstream could not be reached,
+     * 500 otherwise, or the status already sent if the response is committed
+     */
+    private static int getErrorStatus(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse) {
+        if (httpServletResponse.isCommitted()) return httpServletResponse.getStatus();
+        return httpServletRequest.getAttribute(ATTRIBUTE_UPSTREAM_FAILED) != null
+                ? HttpServletResponse.SC_BAD_GATEWAY
+                : HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+    }
+
+    private void reject(HttpServletResponse httpServletResponse, int status, long waitNanos) throws IOException {
+        long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        httpServletResponse.setHeader(STRING_RETRY_AFTER_HEADER_NAME, Long.toString(seconds));
+        httpServletResponse.sendError(status);
+    }
+
+    private static boolean isOverloadStatus(Integer status) {
+        return status != null && (status == HttpServletResponse.SC_BAD_GATEWAY
+                || status == HttpServletResponse.SC_SERVICE_UNAVAILABLE
+                || status == HttpServletResponse.SC_GATEWAY_TIMEOUT);
+    }
+
+    /**
+     * Releases the upstream connections, the executors and the access log (if any)
+     */
+    public void destroy() {
+        this.setVirtualThreads(false);
+        if (this.batchExecutor != null) {
+            this.batchExecutor.shutdownNow();
+            this.batchExecutor = null;
+        }
+        if (this.httpClient != null) {
+            try {
+                this.httpClient.close();
+            } catch (IOException e) {
+                log("Error closing the upstream connections", e);
+            }
+            this.httpClient = null;
+        }
+        if (this.accessLog != null) {
+            this.accessLog.close();
+            this.accessLog = null;
+        }
+        if (this.http2Client != null) {
+            this.http2Client.close();
+            this.http2Client = null;
+        }
+        super.destroy();
     }
 
     /**
@@ -178,7 +539,9 @@ public class ProxyServlet extends HttpServlet {
     }
 
     /**
-     * Performs an HTTP POST request
+     * Performs an HTTP POST request. When the maxFileUploadSize has been set, requests declaring a
+     * Content-Length over it are rejected (413) before reading their body, and the body of the requests sent with "Expect: 100-continue"
+     * is streamed to the upstream once it has agreed to receive it, so an upstream rejection costs no upload.
      *
      * @param httpServletRequest  The {@link HttpServletRequest} object passed
      *                            in by the servlet engine representing the
@@ -188,6 +551,16 @@ public class ProxyServlet extends HttpServlet {
      */
     public void doPost(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse)
             throws IOException, ServletException {
+        long contentLength = httpServletRequest.getContentLengthLong();
+        if (rejectOversizedPosts && contentLength > this.getMaxFileUploadSize()) {
+            debug("POST Request URL: " + httpServletRequest.getRequestURL(), "Rejected Content-Length: " + contentLength);
+            httpServletResponse.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+            return;
+        }
+        if (isBatchRequest(httpServletRequest)) {
+            this.executeBatchRequest(httpServletRequest, httpServletResponse);
+            return;
+        }
         // Create a standard POST request
         String contentType = httpServletRequest.getContentType();
         String destinationUrl = this.getProxyURL(httpServletRequest);
@@ -197,8 +570,10 @@ public class ProxyServlet extends HttpServlet {
         HttpPost postMethodProxyRequest = new HttpPost(destinationUrl);
         // Forward the request headers
         setProxyRequestHeaders(httpServletRequest, postMethodProxyRequest);
-        // Check if this is a multipart (file upload) POST
-        if (ServletFileUpload.isMultipartContent(httpServletRequest)) {
+        // Check if the client waits for approval before sending the body (the gwt-rpc content has to be rewritten)
+        if (isExpectContinue(httpServletRequest) && (contentType == null || !contentType.startsWith("text/x-gwt-rpc"))) {
+            this.handleStreamedPost(postMethodProxyRequest, httpServletRequest);
+        } else if (ServletFileUpload.isMultipartContent(httpServletRequest)) {
             this.handleMultipartPost(postMethodProxyRequest, httpServletRequest);
         } else {
             String encodedContentType = "application/x-www-form-urlencoded";
@@ -218,6 +593,37 @@ public class ProxyServlet extends HttpServlet {
         }
     }
 
+    /**
+     * Sets up the given {@link HttpPost} to stream the body of the given {@link HttpServletRequest}
+     * as it is, waiting for the upstream "100 Continue" before sending it. The servlet input stream
+     * is only read (so the container only sends its own "100 Continue" to the client, provided it
+     * is configured to do so on read) once the upstream has agreed. When the upstream answers
+     * straight away with a final status (401, 413...) that response is sent back without reading
+     * any body byte. The HTTP/2 upstream mode buffers the body instead.
+     *
+     * @param postMethodProxyRequest The {@link HttpPost} that we are
+     *                               configuring to stream the POST body
+     * @param httpServletRequest     The {@link HttpServletRequest} that contains
+     *                               the POST body to be streamed via the {@link HttpPost}
+     */
+    private void handleStreamedPost(HttpPost postMethodProxyRequest, HttpServletRequest httpServletRequest)
+            throws IOException {
+        // The framing of the client request does not apply to the upstream one: HttpClient sets the
+        // Content-Length from the entity (or chunks it if the client did not send it)
+        postMethodProxyRequest.removeHeaders(STRING_TRANSFER_ENCODING_HEADER_NAME);
+        postMethodProxyRequest.removeHeaders(STRING_CONTENT_LENGTH_HEADER_NAME);
+        InputStreamEntity entity = new InputStreamEntity(httpServletRequest.getInputStream(), httpServletRequest.getContentLengthLong());
+        entity.setContentType(httpServletRequest.getContentType());
+        postMethodProxyRequest.setEntity(entity);
+        postMethodProxyRequest.setHeader(STRING_EXPECT_HEADER_NAME, "100-continue");
+        postMethodProxyRequest.setConfig(RequestConfig.copy(DEFAULT_REQUEST_CONFIG).setExpectContinueEnabled(true).build());
+    }
+
+    private static boolean isExpectContinue(HttpServletRequest httpServletRequest) {
+        String expect = httpServletRequest.getHeader(STRING_EXPECT_HEADER_NAME);
+        return expect != null && expect.equalsIgnoreCase("100-continue");
+    }
+
     /**
      * Sets up the given {@link HttpPost} to send the same multipart POST
      * data as was sent in the given {@link HttpServletRequest}
@@ -340,6 +746,271 @@ public class ProxyServlet extends HttpServlet {
         postMethodProxyRequest.setEntity(entity);
     }
 
+    /**
+     * Executes a batch of GET requests, one path (relative to the servlet mapping, with its optional query
+     * string) per line of the POST body. Up to batchParallelism sub-requests are sent concurrently to the
+     * upstream and their responses are streamed back as parts of a multipart/mixed response as soon as
+     * they finish, so the parts are not necessarily in the order of the batch. Every part has the
+     * X-Batch-Index, X-Batch-Path and X-Batch-Status headers; sub-requests exceeding the batchTimeout
+     * get a 504 part and those failing a 502 one. Every sub-request goes through the client rate limit
+     * (429 part) and the upstream concurrency limit (503 part) on its own.
+     *
+     * @param httpServletRequest  The {@link HttpServletRequest} containing the batch
+     * @param httpServletResponse The {@link HttpServletResponse} by which the parts are streamed back
+     */
+    private void executeBatchRequest(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse)
+            throws IOException {
+        // Read char by char so an oversized body is rejected without buffering it
+        List<String> paths = new ArrayList<>();
+        BufferedReader reader = httpServletRequest.getReader();
+        StringBuilder line = new StringBuilder();
+        int c;
+        do {
+            c = reader.read();
+            if (c == -1 || c == '\n') {
+                String path = line.toString().trim();
+                line.setLength(0);
+                if (path.isEmpty()) continue;
+                if (paths.size() == MAX_BATCH_ITEMS) {
+                    httpServletResponse.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "The batch exceeds " + MAX_BATCH_ITEMS + " requests");
+                    return;
+                }
+                paths.add(path);
+            } else if (line.length() == MAX_BATCH_LINE_LENGTH) {
+                httpServletResponse.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "A batch line exceeds " + MAX_BATCH_LINE_LENGTH + " characters");
+                return;
+            } else {
+                line.append((char) c);
+            }
+        } while (c != -1);
+        if (paths.isEmpty()) {
+            httpServletResponse.sendError(HttpServletResponse.SC_BAD_REQUEST, "The batch is empty");
+            return;
+        }
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(intBatchTimeout)
+                .setConnectTimeout(intBatchTimeout)
+                .setSocketTimeout(intBatchTimeout)
+                .build();
+        List<BatchItem> items = new ArrayList<>(paths.size());
+        for (String path : paths) {
+            int query = path.indexOf('?');
+            String pathInfo = query < 0 ? path : path.substring(0, query);
+            if (!isSafeBatchPath(pathInfo)) {
+                httpServletResponse.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid path in the batch: " + path);
+                return;
+            }
+            HttpGet getMethodProxyRequest;
+            try {
+                getMethodProxyRequest = new HttpGet(this.getProxyURL(httpServletRequest.getServletPath(), pathInfo, query < 0 ? null : path.substring(query + 1)));
+            } catch (IllegalArgumentException e) {
+                httpServletResponse.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid path in the batch: " + path);
+                return;
+            }
+            setProxyRequestHeaders(httpServletRequest, getMethodProxyRequest);
+            // The headers describing the batch body do not apply to its GET sub-requests
+            getMethodProxyRequest.removeHeaders(STRING_CONTENT_TYPE_HEADER_NAME);
+            getMethodProxyRequest.removeHeaders(STRING_CONTENT_ENCODING_HEADER_NAME);
+            getMethodProxyRequest.removeHeaders(STRING_TRANSFER_ENCODING_HEADER_NAME);
+            getMethodProxyRequest.removeHeaders(STRING_EXPECT_HEADER_NAME);
+            getMethodProxyRequest.setConfig(requestConfig);
+            items.add(new BatchItem(items.size(), path, getMethodProxyRequest));
+        }
+        httpServletRequest.setAttribute(ATTRIBUTE_UPSTREAM_URL, getProxyURL(httpServletRequest));
+
+        String boundary = "batch-" + UUID.randomUUID();
+        httpServletResponse.setStatus(HttpServletResponse.SC_OK);
+        httpServletResponse.setContentType("multipart/mixed; boundary=" + boundary);
+        ServletOutputStream out = httpServletResponse.getOutputStream();
+
+        ClientRateLimiter rateLimiter = this.clientRateLimiter;
+        String client = httpServletRequest.getRemoteAddr();
+        CompletionService<BatchItem> completionService = new ExecutorCompletionService<>(this.getBatchExecutor());
+        Map<Future<BatchItem>, BatchItem> pending = new HashMap<>();
+        long timeout = TimeUnit.MILLISECONDS.toNanos(intBatchTimeout);
+        long bytes = 0;
+        int next = 0;
+        try {
+            while (next < items.size() || !pending.isEmpty()) {
+                while (next < items.size() && pending.size() < intBatchParallelism) {
+                    BatchItem item = items.get(next++);
+                    if (rateLimiter != null && rateLimiter.tryAcquire(client) > 0) {
+                        bytes += writeBatchPart(out, boundary, item.index, item.path, SC_TOO_MANY_REQUESTS, null, null, null);
+                        continue;
+                    }
+                    item.deadline = System.nanoTime() + timeout;
+                    pending.put(completionService.submit(() -> this.executeBatchItem(item)), item);
+                }
+                if (pending.isEmpty()) continue;
+                long wait = Long.MAX_VALUE;
+                for (BatchItem item : pending.values()) {
+                    wait = Math.min(wait, item.deadline - System.nanoTime());
+                }
+                Future<BatchItem> done = completionService.poll(Math.max(0, wait), TimeUnit.NANOSECONDS);
+                if (done != null) {
+                    BatchItem item = pending.remove(done);
+                    // Null when the sub-request timed out and its part has already been sent
+                    if (item == null) continue;
+                    try {
+                        done.get();
+                        bytes += writeBatchPart(out, boundary, item.index, item.path, item.status, item.contentType, item.location, item.body);
+                    } catch (ExecutionException e) {
+                        bytes += writeBatchPart(out, boundary, item.index, item.path, HttpServletResponse.SC_BAD_GATEWAY, null, null, null);
+                    }
+                } else {
+                    long now = System.nanoTime();
+                    for (Iterator<Map.Entry<Future<BatchItem>, BatchItem>> it = pending.entrySet().iterator(); it.hasNext(); ) {
+                        Map.Entry<Future<BatchItem>, BatchItem> entry = it.next();
+                        BatchItem item = entry.getValue();
+                        if (item.deadline - now > 0) continue;
+                        it.remove();
+                        item.request.abort();
+                        entry.getKey().cancel(true);
+                        bytes += writeBatchPart(out, boundary, item.index, item.path, HttpServletResponse.SC_GATEWAY_TIMEOUT, null, null, null);
+                    }
+                }
+            }
+            byte[] end = ("--" + boundary + "--\r\n").getBytes(UTF_8);
+            out.write(end);
+            bytes += end.length;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while executing the batch " + httpServletRequest.getRequestURL());
+        } finally {
+            // Only left when the batch was interrupted or the client went away
+            for (Map.Entry<Future<BatchItem>, BatchItem> entry : pending.entrySet()) {
+                entry.getValue().request.abort();
+                entry.getKey().cancel(true);
+            }
+            httpServletRequest.setAttribute(ATTRIBUTE_RESPONSE_BYTES, bytes);
+        }
+    }
+
+    /**
+     * Executes a sub-request of a batch, keeping its buffered response in the given item
+     * and feeding the concurrency limiter (if any) with its upstream response time
+     */
+    private BatchItem executeBatchItem(BatchItem item) {
+        AdaptiveConcurrencyLimiter limiter = this.concurrencyLimiter;
+        if (limiter != null && !limiter.tryAcquire()) {
+            item.status = HttpServletResponse.SC_SERVICE_UNAVAILABLE;
+            return item;
+        }
+        long start = System.nanoTime();
+        try {
+            HttpResponse httpResponse = this.executeUpstreamRequest(item.request);
+            long upstreamTime = System.nanoTime() - start;
+            int status = httpResponse.getStatusLine().getStatusCode();
+            if (limiter != null) {
+                if (isOverloadStatus(status)) {
+                    limiter.onDropped();
+                } else {
+                    limiter.onSuccess(upstreamTime);
+                }
+                limiter = null;
+            }
+            try {
+                Header contentType = httpResponse.getFirstHeader(STRING_CONTENT_TYPE_HEADER_NAME);
+                Header location = httpResponse.getFirstHeader(STRING_LOCATION_HEADER);
+                HttpEntity entity = httpResponse.getEntity();
+                item.body = entity == null ? null : EntityUtils.toByteArray(entity);
+                item.contentType = contentType == null ? null : contentType.getValue();
+                item.location = location == null ? null : location.getValue();
+                item.status = httpResponse.getStatusLine().getStatusCode();
+            } finally {
+                EntityUtils.consumeQuietly(httpResponse.getEntity());
+            }
+        } catch (ConnectionPoolTimeoutException e) {
+            // The upstream was not contacted: all the pooled connections are busy
+            item.status = HttpServletResponse.SC_SERVICE_UNAVAILABLE;
+            if (limiter != null) limiter.release();
+            limiter = null;
+        } catch (IOException e) {
+            debug("Batch request " + item.path + " failed: " + e.getMessage());
+            item.status = item.request.isAborted() ? HttpServletResponse.SC_GATEWAY_TIMEOUT : HttpServletResponse.SC_BAD_GATEWAY;
+        } finally {
+            // Still set when the upstream could not be reached
+            if (limiter != null) limiter.onDropped();
+        }
+        return item;
+    }
+
+    /**
+     * The batch paths do not go through the container normalization, so the ones that could escape the
+     * proxied path once resolved by the upstream (dot segments, also encoded or as path parameters like
+     * "..;", backslashes and empty segments) are rejected
+     *
+     * @param pathInfo the path of a sub-request, without its query string
+     * @return true if the path can be proxied
+     */
+    private static boolean isSafeBatchPath(String pathInfo) {
+        if (!pathInfo.startsWith("/")) return false;
+        String decoded = pathInfo;
+        // Decoded several times so double encoded sequences (%252e) are caught as well
+        for (int i = 0; i < 3 && decoded.indexOf('%') >= 0; i++) {
+            try {
+                decoded = URLDecoder.decode(decoded.replace("+", "%2B"), "UTF-8");
+            } catch (IllegalArgumentException | UnsupportedEncodingException e) {
+                return false;
+            }
+        }
+        if (decoded.indexOf('%') >= 0 || decoded.indexOf('\\') >= 0 || decoded.contains("//")) return false;
+        for (String segment : decoded.split("/")) {
+            int parameters = segment.indexOf(';');
+            if (parameters >= 0) segment = segment.substring(0, parameters);
+            if (segment.equals(".") || segment.equals("..")) return false;
+        }
+        return true;
+    }
+
+    private boolean isBatchRequest(HttpServletRequest httpServletRequest) {
+        return stringBatchPath != null && "POST".equals(httpServletRequest.getMethod())
+                && stringBatchPath.equals(httpServletRequest.getPathInfo());
+    }
+
+    private static long writeBatchPart(ServletOutputStream out, String boundary, int index, String path, int status,
+                                       String contentType, String location, byte[] body) throws IOException {
+        StringBuilder headers = new StringBuilder(256)
+                .append("--").append(boundary).append("\r\n")
+                .append(STRING_CONTENT_TYPE_HEADER_NAME).append(": ").append(contentType == null ? "application/octet-stream" : contentType).append("\r\n")
+                .append("X-Batch-Index: ").append(index).append("\r\n")
+                .append("X-Batch-Path: ").append(path).append("\r\n")
+                .append("X-Batch-Status: ").append(status).append("\r\n");
+        if (location != null) headers.append(STRING_LOCATION_HEADER).append(": ").append(location).append("\r\n");
+        int length = body == null ? 0 : body.length;
+        headers.append(STRING_CONTENT_LENGTH_HEADER_NAME).append(": ").append(length).append("\r\n\r\n");
+        byte[] head = headers.toString().getBytes(UTF_8);
+        out.write(head);
+        if (body != null) out.write(body);
+        out.write('\r');
+        out.write('\n');
+        // Every part is sent as soon as it is ready
+        out.flush();
+        return head.length + length + 2;
+    }
+
+    private ExecutorService getBatchExecutor() {
+        ExecutorService executor = this.virtualThreadExecutor;
+        if (executor != null) return executor;
+        executor = this.batchExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = this.batchExecutor;
+                if (executor == null) {
+                    AtomicInteger threads = new AtomicInteger();
+                    executor = Executors.newCachedThreadPool(r -> {
+                        Thread thread = new Thread(r, "proxy-batch-" + threads.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    this.batchExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
     /**
      * Executes the {@link HttpUriRequest} passed in and sends the proxy response
      * back to the client via the given {@link HttpServletResponse}
@@ -363,13 +1034,40 @@ public class ProxyServlet extends HttpServlet {
             SSLContext.setDefault(ctx);
         }
 
-        // Create a default HttpClient
-        HttpClient httpClient = HttpClientBuilder.create().disableRedirectHandling().build();
+        httpServletRequest.setAttribute(ATTRIBUTE_UPSTREAM_URL, httpMethodProxyRequest.getURI().toString());
+
         // Create a response
-        HttpResponse httpResponse = httpClient.execute(httpMethodProxyRequest);
+        HttpResponse httpResponse;
+        long start = System.nanoTime();
+        try {
+            httpResponse = this.executeUpstreamRequest(httpMethodProxyRequest);
+        } catch (ConnectionPoolTimeoutException e) {
+            // All the pooled connections are busy, the upstream itself has not failed
+            reject(httpServletResponse, HttpServletResponse.SC_SERVICE_UNAVAILABLE, TimeUnit.SECONDS.toNanos(1));
+            return;
+        } catch (IOException e) {
+            httpServletRequest.setAttribute(ATTRIBUTE_UPSTREAM_FAILED, Boolean.TRUE);
+            throw e;
+        }
+        httpServletRequest.setAttribute(ATTRIBUTE_UPSTREAM_TIME, System.nanoTime() - start);
+
+        try {
+            this.sendProxyResponse(httpResponse, httpServletRequest, httpServletResponse);
+        } finally {
+            // Releases the pooled connection whatever the path taken (304 and redirects do not read the body)
+            EntityUtils.consumeQuietly(httpResponse.getEntity());
+        }
+    }
 
+    /**
+     * Sends the upstream response back to the client via the given {@link HttpServletResponse}
+     */
+    private void sendProxyResponse(HttpResponse httpResponse,
+                                   HttpServletRequest httpServletRequest,
+                                   HttpServletResponse httpServletResponse) throws IOException, ServletException {
         // Execute the request
         int intProxyResponseCode = httpResponse.getStatusLine().getStatusCode();
+        httpServletRequest.setAttribute(ATTRIBUTE_UPSTREAM_STATUS, intProxyResponseCode);
 
         // Check if the proxy response is a redirect
         // The following code is adapted from org.tigris.noodle.filters.CheckForRedirect
@@ -434,12 +1132,84 @@ public class ProxyServlet extends HttpServlet {
             // Send the content to the client
             debug("Received status code: " + intProxyResponseCode, "Response is gzipped content");
             httpServletResponse.getOutputStream().write(aux);
+            httpServletRequest.setAttribute(ATTRIBUTE_RESPONSE_BYTES, (long) aux.length);
         } else {
             byte[] aux = IOUtils.toByteArray(httpResponse.getEntity().getContent());
             httpServletResponse.getOutputStream().write(aux);
+            httpServletRequest.setAttribute(ATTRIBUTE_RESPONSE_BYTES, (long) aux.length);
         }
     }
 
+    /**
+     * Sends the request to the upstream, over HTTP/2 if enabled and supported by the upstream, or over HTTP/1.1 otherwise
+     *
+     * @param httpMethodProxyRequest An object representing the proxy request to be made
+     * @return the upstream response
+     * @throws IOException if the request cannot be executed
+     */
+    private HttpResponse executeUpstreamRequest(HttpUriRequest httpMethodProxyRequest) throws IOException {
+        if (http2 && !http2Unsupported) {
+            try {
+                HttpResponse httpResponse = this.getHttp2Client().execute(httpMethodProxyRequest);
+                http2Confirmed = true;
+                return httpResponse;
+            } catch (IOException e) {
+                // With TLS the protocol is negotiated, but h2c relies on prior knowledge: when the very
+                // first exchange fails because of the protocol, the upstream is assumed to only speak
+                // HTTP/1.1. Any other failure (e.g. the upstream restarting) is retried over h2c next time
+                if (isSecure || http2Confirmed || !Http2UpstreamClient.isProtocolFailure(e)) throw e;
+                http2Unsupported = true;
+                log("Upstream " + getProxyHostAndPort() + " does not support h2c, falling back to HTTP/1.1: " + e.getMessage());
+                // A streamed body has already been consumed, so this request cannot be sent again (the next ones will)
+                if (!isReplayable(httpMethodProxyRequest)) throw e;
+            }
+        }
+        return this.getHttpClient().execute(httpMethodProxyRequest);
+    }
+
+    private static boolean isReplayable(HttpUriRequest httpMethodProxyRequest) {
+        if (!(httpMethodProxyRequest instanceof HttpEntityEnclosingRequest)) return true;
+        HttpEntity entity = ((HttpEntityEnclosingRequest) httpMethodProxyRequest).getEntity();
+        return entity == null || entity.isRepeatable();
+    }
+
+    private CloseableHttpClient getHttpClient() {
+        CloseableHttpClient client = this.httpClient;
+        if (client == null) {
+            synchronized (this) {
+                client = this.httpClient;
+                if (client == null) {
+                    // Every servlet proxies to a single upstream, so the whole pool can be used for its route
+                    PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+                    connectionManager.setMaxTotal(getMaxConcurrency());
+                    connectionManager.setDefaultMaxPerRoute(getMaxConcurrency());
+                    client = HttpClientBuilder.create()
+                            .setConnectionManager(connectionManager)
+                            // Never wait forever for a connection when the pool is exhausted
+                            .setDefaultRequestConfig(DEFAULT_REQUEST_CONFIG)
+                            .disableRedirectHandling()
+                            .build();
+                    this.httpClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    private Http2UpstreamClient getHttp2Client() {
+        Http2UpstreamClient client = this.http2Client;
+        if (client == null) {
+            synchronized (this) {
+                client = this.http2Client;
+                if (client == null) {
+                    client = new Http2UpstreamClient(isSecure, getMaxConcurrency());
+                    this.http2Client = client;
+                }
+            }
+        }
+        return client;
+    }
+
     /**
      * The response body will be assumed to be gzipped if the GZIP header has been set.
      *
@@ -494,7 +1264,7 @@ public class ProxyServlet extends HttpServlet {
      *                               the proxy host
      */
     @SuppressWarnings("unchecked")
-    private void setProxyRequestHeaders(HttpServletRequest httpServletRequest, HttpUriRequest httpMethodProxyRequest) {
+    void setProxyRequestHeaders(HttpServletRequest httpServletRequest, HttpUriRequest httpMethodProxyRequest) {
         // Get an Enumeration of all of the header names sent by the client
         Enumeration enumerationOfHeaderNames = httpServletRequest.getHeaderNames();
         while (enumerationOfHeaderNames.hasMoreElements()) {
@@ -524,7 +1294,11 @@ public class ProxyServlet extends HttpServlet {
     }
 
     // Accessors
-    private String getProxyURL(HttpServletRequest httpServletRequest) {
+    String getProxyURL(HttpServletRequest httpServletRequest) {
+        return getProxyURL(httpServletRequest.getServletPath(), httpServletRequest.getPathInfo(), httpServletRequest.getQueryString());
+    }
+
+    private String getProxyURL(String servletPath, String pathInfo, String queryString) {
         // Set the protocol to HTTP
         String protocol = (isSecure) ? "https://" : "http://";
         String stringProxyURL = protocol + this.getProxyHostAndPort();
@@ -532,7 +1306,7 @@ public class ProxyServlet extends HttpServlet {
         String path = this.getProxyPath();
         if (path == null || path.isEmpty()) {
             // simply use whatever servlet path that was part of the request as opposed to getting a preset/configurable proxy path
-            path = httpServletRequest.getServletPath();
+            path = servletPath;
         }
         if (!removePrefix) {
             stringProxyURL += stringPrefixPath + path;
@@ -540,7 +1314,6 @@ public class ProxyServlet extends HttpServlet {
         stringProxyURL += "/";
 
         // Handle the path given to the servlet
-        String pathInfo = httpServletRequest.getPathInfo();
         if (pathInfo != null) {
             if (pathInfo.startsWith("/")) {
                 // remove the first '/' from the pathInfo
@@ -556,8 +1329,8 @@ public class ProxyServlet extends HttpServlet {
         }
 
         // Handle the query string
-        if (httpServletRequest.getQueryString() != null) {
-            stringProxyURL += "?" + httpServletRequest.getQueryString();
+        if (queryString != null) {
+            stringProxyURL += "?" + queryString;
         }
 
         return stringProxyURL;
@@ -588,6 +1361,74 @@ public class ProxyServlet extends HttpServlet {
         this.isSecure = secure;
     }
 
+    protected boolean isHttp2() {
+        return this.http2;
+    }
+
+    protected void setHttp2(boolean http2) {
+        this.http2 = http2;
+    }
+
+    protected void setAdaptiveConcurrency(boolean adaptiveConcurrency) {
+        this.adaptiveConcurrency = adaptiveConcurrency;
+    }
+
+    protected int getMaxConcurrency() {
+        return this.intMaxConcurrency;
+    }
+
+    protected void setMaxConcurrency(int intMaxConcurrency) {
+        this.intMaxConcurrency = intMaxConcurrency;
+    }
+
+    protected void setRttTolerance(double rttTolerance) {
+        this.rttTolerance = rttTolerance;
+    }
+
+    protected void setClientRateLimit(double clientRateLimit) {
+        this.clientRateLimit = clientRateLimit;
+    }
+
+    protected void setClientRateBurst(int intClientRateBurst) {
+        this.intClientRateBurst = intClientRateBurst;
+    }
+
+    protected boolean isVirtualThreads() {
+        return this.virtualThreadExecutor != null;
+    }
+
+    /**
+     * Enables the virtual-thread-per-request mode. It requires Java 21 and async support for the servlet
+     * (async-supported in web.xml), otherwise the requests keep being processed in the container threads.
+     */
+    protected void setVirtualThreads(boolean virtualThreads) {
+        if (virtualThreads && this.virtualThreadExecutor == null) {
+            this.virtualThreadExecutor = VirtualThreads.newThreadPerTaskExecutor("proxy-");
+            if (this.virtualThreadExecutor == null) {
+                log("Virtual threads require Java 21 or newer, requests are processed in the container threads");
+            }
+        } else if (!virtualThreads && this.virtualThreadExecutor != null) {
+            this.virtualThreadExecutor.shutdown();
+            this.virtualThreadExecutor = null;
+        }
+    }
+
+    protected String getBatchPath() {
+        return this.stringBatchPath;
+    }
+
+    protected void setBatchPath(String stringBatchPath) {
+        this.stringBatchPath = stringBatchPath;
+    }
+
+    protected void setBatchParallelism(int intBatchParallelism) {
+        this.intBatchParallelism = Math.max(1, intBatchParallelism);
+    }
+
+    protected void setBatchTimeout(int intBatchTimeout) {
+        this.intBatchTimeout = intBatchTimeout;
+    }
+
     protected void setFollowRedirects(boolean followRedirects) {
         this.followRedirects = followRedirects;
     }
@@ -616,8 +1457,12 @@ public class ProxyServlet extends HttpServlet {
         return this.intMaxFileUploadSize;
     }
 
+    /**
+     * Sets the in-memory threshold of the uploaded files and, from then on, the maximum size of the POST requests
+     */
     protected void setMaxFileUploadSize(int intMaxFileUploadSizeNew) {
         this.intMaxFileUploadSize = intMaxFileUploadSizeNew;
+        this.rejectOversizedPosts = true;
     }
 
     private void debug(String... msg) {
@@ -628,6 +1473,26 @@ public class ProxyServlet extends HttpServlet {
         }
     }
 
+    /**
+     * A sub-request of a batch and, once executed, its buffered response
+     */
+    private static class BatchItem {
+        private final int index;
+        private final String path;
+        private final HttpGet request;
+        private long deadline;
+        private int status;
+        private String contentType;
+        private String location;
+        private byte[] body;
+
+        private BatchItem(int index, String path, HttpGet request) {
+            this.index = index;
+            this.path = path;
+            this.request = request;
+        }
+    }
+
     //DefaultTrustManager accepts all certificates
     private static class DefaultTrustManager implements X509TrustManager {
 
@@ -24,6 +24,11 @@ public class StaticFilesProxyServlet extends HttpServlet{
      */
     private String stringFilePath = "";
 
+    /**
+     * The (optional) access log, enabled with the init-param 'accessLogFile'
+     */
+    private AccessLog accessLog;
+
     /**
      * Initialize the <code>ProxyServlet</code>
      * @param servletConfig The Servlet configuration passed in by the servlet container
@@ -36,6 +41,20 @@ public class StaticFilesProxyServlet extends HttpServlet{
         if (stringProxyFilePathNew != null && stringProxyFilePathNew.length() > 0) {
             this.setProxyFilePath(stringProxyFilePathNew);
         }
+
+        // Get the access log if specified
+        this.accessLog = AccessLog.open(servletConfig);
+    }
+
+    /**
+     * Releases the access log (if any)
+     */
+    public void destroy() {
+        if (this.accessLog != null) {
+            this.accessLog.close();
+            this.accessLog = null;
+        }
+        super.destroy();
     }
 
     /**
@@ -47,14 +66,23 @@ public class StaticFilesProxyServlet extends HttpServlet{
      *                             we can send a proxied response to the client
      */
     public void doGet(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse) {
+        long start = System.nanoTime();
+        long bytes = 0;
         String pathInfo = httpServletRequest.getPathInfo();
         File file = new File(this.stringFilePath + pathInfo);
         try {
             byte[] rtn;
             rtn = FileUtils.readFileToString(file, Charset.defaultCharset()).getBytes();
             httpServletResponse.getOutputStream().write(rtn);
+            bytes = rtn.length;
         } catch (IOException e) {
             System.err.println(e.getMessage());
+        } finally {
+            AccessLog accessLog = this.accessLog;
+            if (accessLog != null) {
+                accessLog.log(httpServletRequest.getMethod(), httpServletRequest.getRequestURI(), httpServletRequest.getQueryString(),
+                        file.getPath(), httpServletResponse.getStatus(), bytes, start, -1);
+            }
         }
     }
 
@@ -0,0 +1,22 @@
+package org.reactome.server.utils.proxy;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Access to the virtual threads of the running JVM. Virtual threads need Java 21,
+ * so this (Java 8) version does not create any and the jar ships a Java 21 version
+ * of this class under META-INF/versions/21 that does.
+ */
+final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @param prefix name prefix of the created threads
+     * @return an executor starting a new virtual thread per task, or null if virtual threads are not supported
+     */
+    static ExecutorService newThreadPerTaskExecutor(String prefix) {
+        return null;
+    }
+}
@@ -0,0 +1,21 @@
+package org.reactome.server.utils.proxy;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Java 21 version of the access to the virtual threads, packaged under META-INF/versions/21.
+ */
+final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @param prefix name prefix of the created threads
+     * @return an executor starting a new virtual thread per task, never null in this version
+     */
+    static ExecutorService newThreadPerTaskExecutor(String prefix) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(prefix, 0).factory());
+    }
+}
@@ -0,0 +1,157 @@
+package org.reactome.server.utils.lru;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LruFolderContentCheckerTest {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void reserveEvictsTheLeastRecentlyUsedFiles() throws Exception {
+        LruFolderContentChecker checker = new LruFolderContentChecker(this.folder.toString(), 1000L, 100L, 1000L, 0L);
+        List<String> deleted = new CopyOnWriteArrayList<>();
+        checker.addCheckerFileDeletedHandler(deleted::add);
+        long now = System.currentTimeMillis();
+        write(checker, "b", 300, now - 2 * HOUR);
+        write(checker, "a", 300, now - 3 * HOUR);
+        write(checker, "c", 300, now - HOUR);
+
+        // 900 + 300 > 1000: the oldest file goes, down to 1000 - 300
+        assertTrue(checker.reserve(300, 0));
+        assertEquals(300L, checker.getReservedBytes());
+        assertEquals(600L, checker.getTrackedBytes());
+        assertFalse(Files.exists(this.folder.resolve("a")));
+        assertEquals(1, deleted.size());
+        assertTrue(deleted.get(0).endsWith("/a"));
+
+        write(this.folder.resolve("d"), 300, now);
+        checker.release(300, "d");
+        assertEquals(0L, checker.getReservedBytes());
+        assertEquals(900L, checker.getTrackedBytes());
+
+        LruFolderContentCheckerStats stats = checker.getStats();
+        assertEquals(0, stats.getLastEvictedFiles(), "reservations do not count as a check cycle");
+        assertEquals(1L, stats.getTotalEvictedFiles());
+        assertEquals(1L, stats.getReserveEvictedFiles());
+        assertEquals(300L, stats.getReserveEvictedBytes());
+    }
+
+    @Test
+    void reserveFailsFastWhenNothingCanBeEvicted() throws Exception {
+        LruFolderContentChecker checker = new LruFolderContentChecker(this.folder.toString(), 1000L, 100L, 1000L, HOUR);
+        long now = System.currentTimeMillis();
+        write(checker, "a", 400, now);
+        write(checker, "b", 400, now);
+
+        assertFalse(checker.reserve(300, 0));
+        assertEquals(0L, checker.getReservedBytes());
+        assertEquals(800L, checker.getTrackedBytes());
+        assertTrue(Files.exists(this.folder.resolve("a")));
+        assertTrue(Files.exists(this.folder.resolve("b")));
+        assertEquals(0L, checker.getStats().getTotalEvictedFiles());
+    }
+
+    @Test
+    void reserveWaitsForTheReleaseOfOtherReservations() throws Exception {
+        LruFolderContentChecker checker = new LruFolderContentChecker(this.folder.toString(), 1000L, 100L, 1000L, HOUR);
+        assertTrue(checker.reserve(800, 0));
+        assertFalse(checker.reserve(800, 0));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> waiting = executor.submit(() -> checker.reserve(800, 5000));
+            Thread.sleep(100);
+            assertFalse(waiting.isDone());
+            checker.release(800);
+            assertTrue(waiting.get(5, TimeUnit.SECONDS));
+            assertEquals(800L, checker.getReservedBytes());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void reserveWaitsForFilesToExpire() throws Exception {
+        long ttl = 300L;
+        LruFolderContentChecker checker = new LruFolderContentChecker(this.folder.toString(), 1000L, 100L, 1000L, ttl);
+        write(checker, "a", 800, System.currentTimeMillis());
+
+        long start = System.nanoTime();
+        assertTrue(checker.reserve(500, 5000));
+        long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(waited >= ttl - 50 && waited < 5000, "waited " + waited + "ms");
+        assertFalse(Files.exists(this.folder.resolve("a")));
+        assertEquals(500L, checker.getReservedBytes());
+        assertEquals(0L, checker.getTrackedBytes());
+    }
+
+    @Test
+    void checkEvictsDownToTheThresholdAndRecordsTheCycle() throws Exception {
+        LruFolderContentChecker checker = new LruFolderContentChecker(this.folder.toString(), 1000L, 300L, 1000L, 0L);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 5; i++) write(this.folder.resolve("f" + i), 200, now - (10 - i) * HOUR);
+
+        // 1000 > 1000 - 300: f0 and f1 (the oldest) go
+        checker.check();
+        assertEquals(3, checker.getTrackedFiles());
+        assertEquals(600L, checker.getTrackedBytes());
+        assertFalse(Files.exists(this.folder.resolve("f0")));
+        assertFalse(Files.exists(this.folder.resolve("f1")));
+        assertTrue(Files.exists(this.folder.resolve("f2")));
+
+        LruFolderContentCheckerStats stats = checker.getStats();
+        assertEquals(2, stats.getLastEvictedFiles());
+        assertEquals(400L, stats.getLastEvictedBytes());
+        assertEquals(2L, stats.getTotalEvictedFiles());
+        assertEquals(0L, stats.getReserveEvictedFiles());
+        assertTrue(stats.getLastSuccessfulRun() > 0);
+
+        // Nothing left to evict: the last cycle values are reset, the totals are kept
+        checker.check();
+        assertEquals(0, stats.getLastEvictedFiles());
+        assertEquals(2L, stats.getTotalEvictedFiles());
+    }
+
+    @Test
+    void reservedBytesCountInTheCheck() throws Exception {
+        LruFolderContentChecker checker = new LruFolderContentChecker(this.folder.toString(), 1000L, 200L, 1000L, 0L);
+        long now = System.currentTimeMillis();
+        write(this.folder.resolve("a"), 300, now - 2 * HOUR);
+        write(this.folder.resolve("b"), 300, now - HOUR);
+        checker.check();
+        assertEquals(600L, checker.getTrackedBytes());
+
+        // 600 + 300 fits in 1000, but the check keeps the threshold free: 900 > 1000 - 200
+        assertTrue(checker.reserve(300, 0));
+        assertEquals(600L, checker.getTrackedBytes());
+        checker.check();
+        assertFalse(Files.exists(this.folder.resolve("a")));
+        assertEquals(300L, checker.getTrackedBytes());
+        assertEquals(300L, checker.getReservedBytes());
+    }
+
+    private void write(LruFolderContentChecker checker, String name, int size, long lastAccess) throws IOException {
+        write(this.folder.resolve(name), size, lastAccess);
+        checker.track(name);
+    }
+
+    private static void write(Path file, int size, long lastAccess) throws IOException {
+        Files.write(file, new byte[size]);
+        Files.getFileAttributeView(file, BasicFileAttributeView.class)
+                .setTimes(null, FileTime.fromMillis(lastAccess), null);
+    }
+}
@@ -0,0 +1,144 @@
+package org.reactome.server.utils.lru;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LruFolderIndexTest {
+
+    private static final int MAGIC = 0x4C525549;
+    private static final String UNICODE_NAME = "\u00fcn\u00efc\u00f6d\u00e9/b";
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void accountsPutsAndRemovals() {
+        LruFolderIndex index = new LruFolderIndex();
+        index.put("a", 100L, 1000L);
+        index.put("b", 50L, 2000L);
+        index.put("a", 30L, 3000L);
+        assertEquals(80L, index.getSize());
+        assertEquals(2, index.getFileCount());
+
+        index.remove("b");
+        index.remove("missing");
+        assertEquals(30L, index.getSize());
+        assertEquals(1, index.getFileCount());
+
+        index.put("c", 10L, 1000L);
+        index.retainAll(new HashSet<>(Arrays.asList("c", "d")));
+        assertEquals(10L, index.getSize());
+        assertNull(index.get("a"));
+    }
+
+    @Test
+    void touchOnlyMovesTheLastAccessForward() {
+        LruFolderIndex index = new LruFolderIndex();
+        index.put("a", 100L, 2000L);
+        long modifications = index.getModifications();
+
+        index.touch("a", 1000L);
+        assertEquals(2000L, index.get("a").getLastAccess());
+        index.touch("a", 3000L);
+        assertEquals(3000L, index.get("a").getLastAccess());
+        index.touch("missing", 3000L);
+        assertNull(index.get("missing"));
+        assertEquals(modifications, index.getModifications(), "accesses are not modifications");
+    }
+
+    @Test
+    void snapshotRoundTrip() throws IOException {
+        LruFolderIndex index = new LruFolderIndex();
+        index.put("a", 100L, 1000L);
+        index.put(UNICODE_NAME, 200L, 2000L);
+        Path snapshot = this.folder.resolve("index.lru");
+        index.write(snapshot);
+        assertFalse(Files.exists(this.folder.resolve("index.lru.tmp")));
+
+        LruFolderIndex loaded = new LruFolderIndex();
+        loaded.load(snapshot);
+        assertEquals(2, loaded.getFileCount());
+        assertEquals(300L, loaded.getSize());
+        assertEquals(100L, loaded.get("a").getSize());
+        assertEquals(1000L, loaded.get("a").getLastAccess());
+        assertEquals(200L, loaded.get(UNICODE_NAME).getSize());
+        assertEquals(2000L, loaded.get(UNICODE_NAME).getLastAccess());
+    }
+
+    @Test
+    void loadKeepsTheEntriesAlreadyTracked() throws IOException {
+        LruFolderIndex index = new LruFolderIndex();
+        index.put("a", 100L, 1000L);
+        index.put("b", 200L, 2000L);
+        Path snapshot = this.folder.resolve("index.lru");
+        index.write(snapshot);
+
+        LruFolderIndex current = new LruFolderIndex();
+        current.put("a", 10L, 5000L);
+        current.load(snapshot);
+        assertEquals(2, current.getFileCount());
+        assertEquals(10L, current.get("a").getSize());
+        assertEquals(5000L, current.get("a").getLastAccess());
+        assertEquals(210L, current.getSize());
+    }
+
+    @Test
+    void rejectsBadMagic() throws IOException {
+        Path snapshot = writeHeader(0x12345678, 1, 0);
+        LruFolderIndex index = new LruFolderIndex();
+        assertThrows(IOException.class, () -> index.load(snapshot));
+        assertEquals(0, index.getFileCount());
+    }
+
+    @Test
+    void rejectsUnsupportedVersion() throws IOException {
+        Path snapshot = writeHeader(MAGIC, 99, 0);
+        LruFolderIndex index = new LruFolderIndex();
+        assertThrows(IOException.class, () -> index.load(snapshot));
+        assertEquals(0, index.getFileCount());
+    }
+
+    @Test
+    void truncatedSnapshotLoadsNothing() throws IOException {
+        LruFolderIndex index = new LruFolderIndex();
+        for (int i = 0; i < 10; i++) index.put("file" + i, i, i);
+        Path snapshot = this.folder.resolve("index.lru");
+        index.write(snapshot);
+        byte[] content = Files.readAllBytes(snapshot);
+        Files.write(snapshot, Arrays.copyOf(content, content.length - 5));
+
+        LruFolderIndex loaded = new LruFolderIndex();
+        loaded.put("kept", 1L, 1L);
+        assertThrows(IOException.class, () -> loaded.load(snapshot));
+        assertEquals(1, loaded.getFileCount());
+        assertEquals(1L, loaded.getSize());
+    }
+
+    @Test
+    void rejectsTooShortFiles() throws IOException {
+        Path snapshot = this.folder.resolve("index.lru");
+        Files.write(snapshot, new byte[]{0x4C, 0x52});
+        assertThrows(IOException.class, () -> new LruFolderIndex().load(snapshot));
+    }
+
+    private Path writeHeader(int magic, int version, int count) throws IOException {
+        Path snapshot = this.folder.resolve("index.lru");
+        try (OutputStream file = Files.newOutputStream(snapshot); DataOutputStream out = new DataOutputStream(file)) {
+            out.writeInt(magic);
+            out.writeInt(version);
+            out.writeInt(count);
+            out.writeLong(System.currentTimeMillis());
+        }
+        return snapshot;
+    }
+}
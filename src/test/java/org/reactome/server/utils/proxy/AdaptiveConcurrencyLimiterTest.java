@@ -0,0 +1,144 @@
+package org.reactome.server.utils.proxy;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(5);
+
+    @Test
+    void acquiresUpToTheLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 3, 10, 2.0);
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(3, limiter.getInFlight());
+        limiter.release();
+        assertEquals(2, limiter.getInFlight());
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    void initialLimitIsBounded() {
+        assertEquals(5, new AdaptiveConcurrencyLimiter(5, 1, 10, 2.0).getLimit());
+        assertEquals(10, new AdaptiveConcurrencyLimiter(1, 20, 10, 2.0).getLimit());
+    }
+
+    @Test
+    void growsWhileTheUpstreamKeepsUpAndNeverExceedsTheMaximum() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 5, 50, 2.0);
+        for (int i = 0; i < 500; i++) {
+            int acquired = acquireAll(limiter);
+            for (int j = 0; j < acquired; j++) limiter.onSuccess(FAST);
+        }
+        assertEquals(50, limiter.getLimit());
+    }
+
+    @Test
+    void doesNotGrowWhenTheLimitIsNotUsed() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 20, 200, 2.0);
+        for (int i = 0; i < 500; i++) {
+            assertTrue(limiter.tryAcquire());
+            limiter.onSuccess(FAST);
+        }
+        assertEquals(20, limiter.getLimit());
+    }
+
+    @Test
+    void backsOffOncePerRoundTrip() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 100, 200, 2.0);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.tryAcquire());
+            limiter.onDropped();
+        }
+        // A burst of failures caused by the same congestion only counts once
+        assertEquals(90, limiter.getLimit());
+
+        // No RTT observed yet: the next backoff is allowed after the default interval (100ms)
+        Thread.sleep(150);
+        assertTrue(limiter.tryAcquire());
+        limiter.onDropped();
+        assertEquals(81, limiter.getLimit());
+    }
+
+    @Test
+    void neverGoesBelowTheMinimum() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 3, 10, 2.0);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limiter.tryAcquire());
+            limiter.onDropped();
+            Thread.sleep(110);
+        }
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    void singleSlowResponsesAreNotCongestion() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 20, 200, 2.0);
+        for (int i = 0; i < 100; i++) {
+            int acquired = acquireAll(limiter);
+            for (int j = 0; j < acquired; j++) limiter.onSuccess(FAST);
+        }
+        int limit = limiter.getLimit();
+        assertTrue(limiter.tryAcquire());
+        limiter.onSuccess(10 * FAST);
+        assertTrue(limiter.getLimit() >= limit, "the smoothed RTT absorbs an outlier");
+    }
+
+    /**
+     * A steady mix of fast and 5x slower endpoints is part of the baseline, not congestion
+     */
+    @Test
+    void mixedEndpointsWithoutBottleneckReachTheMaximum() throws InterruptedException {
+        assertTrue(simulate(0.5, Integer.MAX_VALUE) >= 190);
+        assertTrue(simulate(0.9, Integer.MAX_VALUE) >= 190);
+    }
+
+    /**
+     * The upstream queues past 40 concurrent requests: the limit settles where the RTT doubles (tolerance 2.0)
+     */
+    @Test
+    void settlesAroundTheUpstreamCapacity() throws InterruptedException {
+        int fast = simulate(0.0, 40);
+        assertTrue(fast >= 40 && fast <= 120, "limit " + fast);
+        int mixed = simulate(0.5, 40);
+        assertTrue(mixed >= 40 && mixed <= 120, "limit " + mixed);
+    }
+
+    /**
+     * Rounds of as many concurrent requests as the limit allows; past the capacity the upstream
+     * queues them, so their response time grows with the excess
+     *
+     * @param slowShare share of the requests going to an endpoint 5 times slower
+     * @param capacity  concurrent requests the upstream serves without queueing
+     * @return the limit at the end
+     */
+    private static int simulate(double slowShare, int capacity) throws InterruptedException {
+        Random random = new Random(42);
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 20, 200, 2.0);
+        for (int round = 0; round < 1500; round++) {
+            int acquired = acquireAll(limiter);
+            double queue = Math.max(1.0, (double) acquired / capacity);
+            for (int i = 0; i < acquired; i++) {
+                long base = random.nextDouble() < slowShare ? SLOW : FAST;
+                limiter.onSuccess((long) (base * queue));
+            }
+            // Lets the backoff interval (one smoothed RTT) elapse between rounds
+            Thread.sleep(1);
+        }
+        return limiter.getLimit();
+    }
+
+    private static int acquireAll(AdaptiveConcurrencyLimiter limiter) {
+        int acquired = 0;
+        while (limiter.tryAcquire()) acquired++;
+        return acquired;
+    }
+}
@@ -0,0 +1,64 @@
+package org.reactome.server.utils.proxy;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClientRateLimiterTest {
+
+    private static final long INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test
+    void allowsTheBurstAtOnce() {
+        ClientRateLimiter limiter = new ClientRateLimiter(10.0, 5);
+        for (int i = 0; i < 5; i++) assertEquals(0L, limiter.tryAcquire("client"), "request " + i);
+        long wait = limiter.tryAcquire("client");
+        assertTrue(wait > 0 && wait <= INTERVAL, "wait " + wait);
+    }
+
+    @Test
+    void rejectedRequestsDoNotConsumeTokens() {
+        ClientRateLimiter limiter = new ClientRateLimiter(10.0, 1);
+        assertEquals(0L, limiter.tryAcquire("client"));
+        long first = limiter.tryAcquire("client");
+        long second = limiter.tryAcquire("client");
+        assertTrue(first > 0 && second > 0);
+        assertTrue(second <= first, "the wait does not grow with the rejected requests");
+    }
+
+    @Test
+    void refillsAtTheSustainedRate() throws InterruptedException {
+        ClientRateLimiter limiter = new ClientRateLimiter(10.0, 2);
+        assertEquals(0L, limiter.tryAcquire("client"));
+        assertEquals(0L, limiter.tryAcquire("client"));
+        assertTrue(limiter.tryAcquire("client") > 0);
+
+        // One token back after one interval, not the whole burst
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(INTERVAL) + 20);
+        assertEquals(0L, limiter.tryAcquire("client"));
+        assertTrue(limiter.tryAcquire("client") > 0);
+
+        // The whole burst after burst intervals
+        Thread.sleep(2 * TimeUnit.NANOSECONDS.toMillis(INTERVAL) + 20);
+        assertEquals(0L, limiter.tryAcquire("client"));
+        assertEquals(0L, limiter.tryAcquire("client"));
+        assertTrue(limiter.tryAcquire("client") > 0);
+    }
+
+    @Test
+    void limitsEveryClientOnItsOwn() {
+        ClientRateLimiter limiter = new ClientRateLimiter(1.0, 1);
+        assertEquals(0L, limiter.tryAcquire("a"));
+        assertTrue(limiter.tryAcquire("a") > 0);
+        assertEquals(0L, limiter.tryAcquire("b"));
+    }
+
+    @Test
+    void atLeastOneRequestIsAllowed() {
+        ClientRateLimiter limiter = new ClientRateLimiter(10.0, 0);
+        assertEquals(0L, limiter.tryAcquire("client"));
+        assertTrue(limiter.tryAcquire("client") > 0);
+    }
+}